@@ -0,0 +1,290 @@
+package cfh.dbtester;
+
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+// synthetic rows generated from the column metadata, inserted with PreparedStatement batches of growing size;
+// every step is rolled back, or committed and the table truncated (only tables that were empty before)
+class BulkInserter {
+
+    private static final String FORMAT = "%-16.16s %10d %10.3f %12.1f%n";
+
+    private final ConnectionFactory factory;
+    private final String table;
+    private final List<TableIndex.Column> columns = new ArrayList<TableIndex.Column>();
+    private final String insert;
+    private final int rows;
+    private final int threads;
+    private final boolean truncate;
+    private final long base = System.currentTimeMillis();
+
+    private final List<Histogram> latencies = new ArrayList<Histogram>();
+    private final List<Integer> sizes = new ArrayList<Integer>();
+    private final List<Long> times = new ArrayList<Long>();
+    private final List<Long> inserted = new ArrayList<Long>();
+
+    BulkInserter(ConnectionFactory factory, DatabaseMetaData metaData, TableIndex.Table table,
+            List<TableIndex.Column> all, int rows, int threads, boolean truncate) throws SQLException {
+        this.factory = factory;
+        this.rows = rows;
+        this.threads = threads;
+        this.truncate = truncate;
+        String quote = metaData.getIdentifierQuoteString();
+        quote = quote == null || quote.trim().isEmpty() ? "" : quote.trim();
+        String owner = table.schema != null ? table.schema : table.catalog;
+        this.table = (owner == null ? "" : quote + owner + quote + ".") + quote + table.name + quote;
+        StringBuilder names = new StringBuilder();
+        StringBuilder marks = new StringBuilder();
+        for (TableIndex.Column column : all) {
+            if (column.generated)
+                continue;
+            columns.add(column);
+            if (names.length() > 0) {
+                names.append(", ");
+                marks.append(", ");
+            }
+            names.append(quote).append(column.name).append(quote);
+            marks.append('?');
+        }
+        insert = "INSERT INTO " + this.table + " (" + names + ") VALUES (" + marks + ")";
+    }
+
+    String insert() {
+        return insert;
+    }
+
+    // batch sizes 1, 10, 100, ... up to the rows per thread
+    void run() throws SQLException, InterruptedException {
+        if (truncate && !isEmpty())
+            throw new SQLException("cleanup:truncate refused, " + table + " is not empty; use cleanup:rollback");
+        int perThread = Math.max(1, rows / threads);
+        for (int size = 1; ; size *= 10) {
+            int batch = Math.min(size, perThread);
+            step(batch, perThread, sizes.size());
+            if (batch >= perThread)
+                break;
+        }
+    }
+
+    void report(PrintStream out) {
+        Histogram.printHeader(out);
+        for (int i = 0; i < sizes.size(); i++) {
+            latencies.get(i).print(out, "batch " + sizes.get(i));
+        }
+        out.printf("%-16.16s %10s %10s %12s%n", "[batch size]", "rows", "s", "rows/s");
+        for (int i = 0; i < sizes.size(); i++) {
+            double seconds = times.get(i) / 1e9;
+            out.printf(FORMAT, "batch " + sizes.get(i), inserted.get(i), seconds, inserted.get(i) / seconds);
+        }
+        out.printf("%d thread(s), %s after each step%n", threads, truncate ? "truncated" : "rolled back");
+    }
+
+    private void step(final int batch, final int perThread, final int step) throws SQLException, InterruptedException {
+        final Histogram latency = new Histogram();
+        final SQLException[] error = new SQLException[1];
+        final long[] count = new long[1];
+        List<Thread> workers = new ArrayList<Thread>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final long first = ((long) step * threads + t) * perThread;
+            Thread worker = new Thread("BulkInserter " + t) {
+                @Override
+                public void run() {
+                    Histogram local = new Histogram();
+                    long done = 0;
+                    try {
+                        done = insert(batch, first, perThread, local);
+                    } catch (SQLException ex) {
+                        synchronized (error) {
+                            if (error[0] == null) {
+                                error[0] = ex;
+                            }
+                        }
+                    }
+                    synchronized (latency) {
+                        latency.add(local);
+                        count[0] += done;
+                    }
+                }
+            };
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (truncate) {
+            Connection conn = factory.open();
+            try {
+                Statement stmt = conn.createStatement();
+                try {
+                    stmt.execute("TRUNCATE TABLE " + table);
+                } finally {
+                    stmt.close();
+                }
+            } finally {
+                factory.release(conn);
+            }
+        }
+        sizes.add(batch);
+        latencies.add(latency);
+        times.add(elapsed);
+        inserted.add(count[0]);
+        if (error[0] != null)
+            throw error[0];
+    }
+
+    private boolean isEmpty() throws SQLException {
+        Connection conn = factory.open();
+        try {
+            Statement stmt = conn.createStatement();
+            try {
+                stmt.setMaxRows(1);
+                ResultSet rset = stmt.executeQuery("SELECT 1 FROM " + table);
+                try {
+                    return !rset.next();
+                } finally {
+                    rset.close();
+                }
+            } finally {
+                stmt.close();
+            }
+        } finally {
+            factory.release(conn);
+        }
+    }
+
+    private long insert(int batch, long first, int count, Histogram latency) throws SQLException {
+        Connection conn = factory.open();
+        boolean autoCommit = conn.getAutoCommit();
+        long done = 0;
+        try {
+            conn.setAutoCommit(false);
+            PreparedStatement stmt = conn.prepareStatement(insert);
+            try {
+                int pending = 0;
+                for (long row = first; row < first + count; row++) {
+                    bind(stmt, row);
+                    if (batch > 1) {
+                        stmt.addBatch();
+                    }
+                    pending += 1;
+                    if (pending == batch || row == first + count - 1) {
+                        long t0 = System.nanoTime();
+                        if (batch == 1) {
+                            stmt.executeUpdate();
+                        } else {
+                            stmt.executeBatch();
+                        }
+                        latency.record(System.nanoTime() - t0);
+                        done += pending;
+                        pending = 0;
+                    }
+                }
+            } finally {
+                stmt.close();
+            }
+            if (truncate) {
+                conn.commit();
+            } else {
+                conn.rollback();
+            }
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+            factory.release(conn);
+        }
+        return done;
+    }
+
+    private void bind(PreparedStatement stmt, long row) throws SQLException {
+        for (int i = 0; i < columns.size(); i++) {
+            TableIndex.Column column = columns.get(i);
+            int index = i + 1;
+            int size = column.size == null || column.size <= 0 ? 20 : column.size;
+            switch (column.dataType) {
+                case Types.BIT:
+                case Types.BOOLEAN:
+                    stmt.setBoolean(index, row % 2 == 0);
+                    break;
+                case Types.TINYINT:
+                    stmt.setInt(index, (int) (row % 100));
+                    break;
+                case Types.SMALLINT:
+                    stmt.setInt(index, (int) (row % 30000));
+                    break;
+                case Types.INTEGER:
+                    stmt.setInt(index, (int) (row % Integer.MAX_VALUE));
+                    break;
+                case Types.BIGINT:
+                    stmt.setLong(index, row);
+                    break;
+                case Types.NUMERIC:
+                case Types.DECIMAL:
+                    int scale = column.decimals == null || column.decimals < 0 ? 0 : column.decimals;
+                    int digits = Math.min(18, Math.max(1, (column.size == null ? 18 : column.size) - scale));
+                    long modulo = 1;
+                    for (int d = 0; d < digits; d++) {
+                        modulo *= 10;
+                    }
+                    stmt.setBigDecimal(index, BigDecimal.valueOf(row % modulo).setScale(scale));
+                    break;
+                case Types.REAL:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    stmt.setDouble(index, row + 0.5);
+                    break;
+                case Types.DATE:
+                    stmt.setDate(index, new java.sql.Date(base - (row % 36500) * 86400000L));
+                    break;
+                case Types.TIME:
+                    stmt.setTime(index, new java.sql.Time(base - (row % 86400) * 1000L));
+                    break;
+                case Types.TIMESTAMP:
+                case Types.TIMESTAMP_WITH_TIMEZONE:
+                    stmt.setTimestamp(index, new java.sql.Timestamp(base - row * 1000L));
+                    break;
+                case Types.BINARY:
+                case Types.VARBINARY:
+                case Types.LONGVARBINARY:
+                case Types.BLOB:
+                    byte[] bytes = new byte[Math.min(size, 16)];
+                    for (int b = 0; b < bytes.length; b++) {
+                        bytes[b] = (byte) (row >>> (8 * (b % 8)));
+                    }
+                    stmt.setBytes(index, bytes);
+                    break;
+                case Types.CHAR:
+                case Types.NCHAR:
+                case Types.VARCHAR:
+                case Types.NVARCHAR:
+                case Types.LONGVARCHAR:
+                case Types.LONGNVARCHAR:
+                case Types.CLOB:
+                case Types.NCLOB:
+                    String text = Long.toString(row, 36) + "_" + i;
+                    stmt.setString(index, text.length() > size ? text.substring(text.length() - size) : text);
+                    break;
+                default:
+                    if (column.nullable) {
+                        stmt.setNull(index, column.dataType);
+                    } else {
+                        stmt.setString(index, Long.toString(row % 10));
+                    }
+                    break;
+            }
+        }
+    }
+}
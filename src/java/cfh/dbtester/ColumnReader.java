@@ -0,0 +1,331 @@
+package cfh.dbtester;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.temporal.TemporalAccessor;
+import java.util.Date;
+
+// accessor per column chosen once from the column type, numbers are read into primitive fields without boxing
+abstract class ColumnReader {
+
+    protected final int index;
+    protected boolean isNull;
+
+    ColumnReader(int index) {
+        this.index = index;
+    }
+
+    static ColumnReader[] create(ResultSetMetaData meta) throws SQLException {
+        ColumnReader[] readers = new ColumnReader[meta.getColumnCount()];
+        for (int i = 0; i < readers.length; i++) {
+            int column = i + 1;
+            switch (meta.getColumnType(column)) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                    readers[i] = new IntReader(column);
+                    break;
+                case Types.INTEGER:
+                    // MySQL INT UNSIGNED goes up to 2^32-1
+                    if (meta.isSigned(column)) {
+                        readers[i] = new IntReader(column);
+                    } else {
+                        readers[i] = new LongReader(column);
+                    }
+                    break;
+                case Types.BIGINT:
+                    // BIGINT UNSIGNED does not fit into a long, the driver returns a BigInteger
+                    if (meta.isSigned(column)) {
+                        readers[i] = new LongReader(column);
+                    } else {
+                        readers[i] = new ObjectReader(column);
+                    }
+                    break;
+                case Types.NUMERIC:
+                case Types.DECIMAL:
+                    // whole numbers that fit into a long, like Oracle NUMBER(10)
+                    int precision = meta.getPrecision(column);
+                    if (meta.getScale(column) == 0 && precision > 0 && precision <= 18) {
+                        readers[i] = new LongReader(column);
+                    } else {
+                        readers[i] = new ObjectReader(column);
+                    }
+                    break;
+                case Types.REAL:
+                    readers[i] = new FloatReader(column);
+                    break;
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    readers[i] = new DoubleReader(column);
+                    break;
+                case Types.BIT:
+                    // BIT(n) with n > 1 is a bit field, not a flag
+                    if (meta.getPrecision(column) <= 1) {
+                        readers[i] = new BooleanReader(column);
+                    } else {
+                        readers[i] = new ObjectReader(column);
+                    }
+                    break;
+                case Types.BOOLEAN:
+                    readers[i] = new BooleanReader(column);
+                    break;
+                case Types.TIMESTAMP:
+                    readers[i] = new TimestampReader(column);
+                    break;
+                default:
+                    readers[i] = new ObjectReader(column);
+                    break;
+            }
+        }
+        return readers;
+    }
+
+    abstract void read(ResultSet rset) throws SQLException;
+
+    abstract void render(RowRenderer renderer);
+
+    // bytes of the value last read, estimated from its type without converting it to text
+    abstract int size();
+
+    boolean isPrimitive() {
+        return true;
+    }
+
+    private static class IntReader extends ColumnReader {
+
+        private int value;
+
+        IntReader(int index) {
+            super(index);
+        }
+
+        @Override
+        void read(ResultSet rset) throws SQLException {
+            value = rset.getInt(index);
+            isNull = rset.wasNull();
+        }
+
+        @Override
+        void render(RowRenderer renderer) {
+            if (isNull) {
+                renderer.column((String) null);
+            } else {
+                renderer.column((long) value);
+            }
+        }
+
+        @Override
+        int size() {
+            return isNull ? 0 : 4;
+        }
+    }
+
+    private static class LongReader extends ColumnReader {
+
+        private long value;
+
+        LongReader(int index) {
+            super(index);
+        }
+
+        @Override
+        void read(ResultSet rset) throws SQLException {
+            value = rset.getLong(index);
+            isNull = rset.wasNull();
+        }
+
+        @Override
+        void render(RowRenderer renderer) {
+            if (isNull) {
+                renderer.column((String) null);
+            } else {
+                renderer.column(value);
+            }
+        }
+
+        @Override
+        int size() {
+            return isNull ? 0 : 8;
+        }
+    }
+
+    private static class DoubleReader extends ColumnReader {
+
+        private final StringBuilder text = new StringBuilder(32);
+        private double value;
+
+        DoubleReader(int index) {
+            super(index);
+        }
+
+        @Override
+        void read(ResultSet rset) throws SQLException {
+            value = rset.getDouble(index);
+            isNull = rset.wasNull();
+        }
+
+        @Override
+        void render(RowRenderer renderer) {
+            if (isNull) {
+                renderer.column((String) null);
+            } else {
+                text.setLength(0);
+                text.append(value);
+                renderer.column(text);
+            }
+        }
+
+        @Override
+        int size() {
+            return isNull ? 0 : 8;
+        }
+    }
+
+    private static class FloatReader extends ColumnReader {
+
+        private final StringBuilder text = new StringBuilder(16);
+        private float value;
+
+        FloatReader(int index) {
+            super(index);
+        }
+
+        @Override
+        void read(ResultSet rset) throws SQLException {
+            value = rset.getFloat(index);
+            isNull = rset.wasNull();
+        }
+
+        @Override
+        void render(RowRenderer renderer) {
+            if (isNull) {
+                renderer.column((String) null);
+            } else {
+                text.setLength(0);
+                text.append(value);
+                renderer.column(text);
+            }
+        }
+
+        @Override
+        int size() {
+            return isNull ? 0 : 4;
+        }
+    }
+
+    private static class BooleanReader extends ColumnReader {
+
+        private boolean value;
+
+        BooleanReader(int index) {
+            super(index);
+        }
+
+        @Override
+        void read(ResultSet rset) throws SQLException {
+            value = rset.getBoolean(index);
+            isNull = rset.wasNull();
+        }
+
+        @Override
+        void render(RowRenderer renderer) {
+            renderer.column(isNull ? null : value ? "true" : "false");
+        }
+
+        @Override
+        int size() {
+            return isNull ? 0 : 1;
+        }
+    }
+
+    // getTimestamp instead of getObject, which some drivers answer with their own type (oracle.sql.TIMESTAMP)
+    private static class TimestampReader extends ColumnReader {
+
+        private Timestamp value;
+
+        TimestampReader(int index) {
+            super(index);
+        }
+
+        @Override
+        void read(ResultSet rset) throws SQLException {
+            value = rset.getTimestamp(index);
+            isNull = value == null;
+        }
+
+        @Override
+        void render(RowRenderer renderer) {
+            renderer.column(value);
+        }
+
+        @Override
+        int size() {
+            return isNull ? 0 : 12;
+        }
+
+        @Override
+        boolean isPrimitive() {
+            return false;
+        }
+    }
+
+    private static class ObjectReader extends ColumnReader {
+
+        private Object value;
+
+        ObjectReader(int index) {
+            super(index);
+        }
+
+        @Override
+        void read(ResultSet rset) throws SQLException {
+            value = rset.getObject(index);
+            isNull = value == null;
+        }
+
+        @Override
+        void render(RowRenderer renderer) {
+            renderer.column(value);
+        }
+
+        @Override
+        int size() {
+            if (value == null)
+                return 0;
+            if (value instanceof CharSequence)
+                return ((CharSequence) value).length();
+            if (value instanceof byte[])
+                return ((byte[]) value).length;
+            if (value instanceof BigDecimal)
+                return (((BigDecimal) value).precision() + 1) / 2 + 1;
+            if (value instanceof BigInteger)
+                return ((BigInteger) value).bitLength() / 8 + 1;
+            if (value instanceof Long || value instanceof Double)
+                return 8;
+            if (value instanceof Number)
+                return 4;
+            if (value instanceof Boolean)
+                return 1;
+            if (value instanceof Timestamp)
+                return 12;
+            if (value instanceof Date)
+                return 8;
+            if (value instanceof OffsetDateTime || value instanceof ZonedDateTime)
+                return 16;
+            if (value instanceof TemporalAccessor)
+                return 12;
+            return 16;
+        }
+
+        @Override
+        boolean isPrimitive() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package cfh.dbtester;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// source of connections for benchmark and load runs, released connections may be reused
+interface ConnectionFactory {
+
+    Connection open() throws SQLException;
+
+    void release(Connection conn) throws SQLException;
+}
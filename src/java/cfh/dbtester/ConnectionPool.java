@@ -0,0 +1,113 @@
+package cfh.dbtester;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// lock-free pool of idle connections, validated on borrow; surplus and stale connections are closed
+class ConnectionPool implements ConnectionFactory {
+
+    private static final int VALIDATION_TIMEOUT = 2;  // seconds
+    private static final long IDLE_TIMEOUT = TimeUnit.SECONDS.toNanos(60);
+
+    private final ConnectionFactory source;
+    private final int maxIdle;
+
+    // most recently released first, so borrowing gets the warmest connection and stale ones collect at the end
+    private final ConcurrentLinkedDeque<Idle> idle = new ConcurrentLinkedDeque<Idle>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    ConnectionPool(ConnectionFactory source, int maxIdle) {
+        this.source = source;
+        this.maxIdle = maxIdle;
+    }
+
+    @Override
+    public Connection open() throws SQLException {
+        Idle entry;
+        while ((entry = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            if (System.nanoTime() - entry.since > IDLE_TIMEOUT) {
+                evicted.incrementAndGet();
+                discard(entry.conn);
+            } else if (!isValid(entry.conn)) {
+                invalid.incrementAndGet();
+                discard(entry.conn);
+            } else {
+                reused.incrementAndGet();
+                return entry.conn;
+            }
+        }
+        created.incrementAndGet();
+        return source.open();
+    }
+
+    @Override
+    public void release(Connection conn) throws SQLException {
+        if (conn.isClosed())
+            return;
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            evicted.incrementAndGet();
+            source.release(conn);
+            return;
+        }
+        long now = System.nanoTime();
+        idle.offerFirst(new Idle(conn, now));
+        Idle oldest = idle.peekLast();
+        if (oldest != null && now - oldest.since > IDLE_TIMEOUT && idle.removeLastOccurrence(oldest)) {
+            idleCount.decrementAndGet();
+            evicted.incrementAndGet();
+            discard(oldest.conn);
+        }
+    }
+
+    void close() {
+        Idle entry;
+        while ((entry = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            discard(entry.conn);
+        }
+    }
+
+    void report(PrintStream out) {
+        out.printf("Pool: %d created, %d reused, %d invalid, %d evicted (max idle %d)%n",
+                created.get(), reused.get(), invalid.get(), evicted.get(), maxIdle);
+    }
+
+    private static boolean isValid(Connection conn) {
+        try {
+            return conn.isValid(VALIDATION_TIMEOUT);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private void discard(Connection conn) {
+        try {
+            source.release(conn);
+        } catch (SQLException ex) {
+            // already broken
+        }
+    }
+
+    private static class Idle {
+
+        private final Connection conn;
+        private final long since;
+
+        Idle(Connection conn, long since) {
+            this.conn = conn;
+            this.since = since;
+        }
+    }
+}
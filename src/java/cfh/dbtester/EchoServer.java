@@ -0,0 +1,91 @@
+package cfh.dbtester;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+// far end for tcpbench: the first byte of a connection selects echo ('E') or sink ('S', acknowledged with one byte at EOF)
+class EchoServer extends Thread {
+
+    static final int ECHO = 'E';
+    static final int SINK = 'S';
+
+    private final ServerSocket server;
+
+    // <loopback> only reachable from this host, like the in-process server of tcpbench:, else on all interfaces
+    EchoServer(int port, boolean loopback) throws IOException {
+        super("EchoServer");
+        setDaemon(true);
+        server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(loopback ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port) : new InetSocketAddress(port));
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    void shutdown() {
+        try {
+            server.close();
+        } catch (IOException ex) {
+            // accept loop ends anyway
+        }
+    }
+
+    @Override
+    public void run() {
+        while (!server.isClosed()) {
+            try {
+                final Socket socket = server.accept();
+                Thread handler = new Thread("EchoServer " + socket.getRemoteSocketAddress()) {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                };
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException ex) {
+                if (!server.isClosed()) {
+                    System.out.printf("Echo: %s%n", ex);
+                }
+            }
+        }
+    }
+
+    private static void serve(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            int mode = in.read();
+            byte[] buffer = new byte[1 << 16];
+            int read;
+            long total = 0;
+            while ((read = in.read(buffer)) != -1) {
+                if (mode == ECHO) {
+                    out.write(buffer, 0, read);
+                    out.flush();
+                }
+                total += read;
+            }
+            if (mode == SINK) {
+                out.write((int) (total & 0x7F));
+                out.flush();
+            }
+        } catch (IOException ex) {
+            // client gone
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                // already closed
+            }
+        }
+    }
+}
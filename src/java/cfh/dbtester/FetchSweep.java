@@ -0,0 +1,158 @@
+package cfh.dbtester;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+// the same query fetched with growing fetch sizes; the smallest size within 5% of the fastest total time is recommended,
+// larger sizes only cost memory; auto-commit is off meanwhile (PostgreSQL ignores the fetch size with it on and
+// reads the whole result), the transaction is rolled back and auto-commit restored afterwards
+class FetchSweep {
+
+    static final int[] SIZES = { 0, 10, 50, 100, 500, 1000, 5000, 10000 };
+
+    private static final double TOLERANCE = 1.05;
+    private static final String FORMAT = "%-10s %12s %12s %10s %12s %10s%n";
+    private static final String ROW = "%-10s %12.3f %12.3f %10d %12.1f %10.1f%n";
+
+    private final Connection conn;
+    private final String sql;
+    private final int runs;
+
+    private final List<Step> steps = new ArrayList<Step>();
+
+    FetchSweep(Connection conn, String sql, int runs) {
+        this.conn = conn;
+        this.sql = sql;
+        this.runs = Math.max(1, runs);
+    }
+
+    // one warmup with the driver default, then every size; the fastest of <runs> runs is kept
+    void run() throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            fetch(0);
+            for (int size : SIZES) {
+                Step best = null;
+                for (int run = 0; run < runs; run++) {
+                    Step step = fetch(size);
+                    if (best == null || step.total < best.total) {
+                        best = step;
+                    }
+                }
+                steps.add(best);
+            }
+        } finally {
+            conn.rollback();
+            if (autoCommit) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    // recommended fetch size, -1 if nothing was measured
+    int recommended() {
+        long fastest = Long.MAX_VALUE;
+        for (Step step : steps) {
+            fastest = Math.min(fastest, step.total);
+        }
+        for (Step step : steps) {
+            if (step.size > 0 && step.total <= fastest * TOLERANCE)
+                return step.size;
+        }
+        return steps.isEmpty() ? -1 : 0;
+    }
+
+    void report(PrintStream out) {
+        out.printf(FORMAT, "[fetch]", "first [ms]", "total [ms]", "rows", "rows/s", "heap [MB]");
+        for (Step step : steps) {
+            double seconds = step.total / 1e9;
+            out.printf(ROW, step.size == 0 ? "default" : Integer.toString(step.size),
+                    step.first / 1e6, step.total / 1e6, step.rows, seconds > 0 ? step.rows / seconds : 0,
+                    step.heap / (1024.0 * 1024.0));
+        }
+        int best = recommended();
+        if (best > 0) {
+            out.printf("recommended fetch size: %d%n", best);
+        } else if (best == 0) {
+            out.printf("recommended fetch size: driver default%n");
+        }
+    }
+
+    private Step fetch(int size) throws SQLException {
+        List<MemoryPoolMXBean> pools = heapPools();
+        System.gc();
+        for (MemoryPoolMXBean pool : pools) {
+            pool.resetPeakUsage();
+        }
+        Step step = new Step(size);
+        Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            if (size > 0) {
+                stmt.setFetchSize(size);
+            }
+            long start = System.nanoTime();
+            ResultSet rset = stmt.executeQuery(sql);
+            try {
+                if (size > 0) {
+                    rset.setFetchSize(size);
+                }
+                ColumnReader[] readers = ColumnReader.create(rset.getMetaData());
+                while (rset.next()) {
+                    for (ColumnReader reader : readers) {
+                        reader.read(rset);
+                    }
+                    if (step.rows == 0) {
+                        step.first = System.nanoTime() - start;
+                    }
+                    step.rows += 1;
+                }
+            } finally {
+                rset.close();
+            }
+            step.total = System.nanoTime() - start;
+            if (step.rows == 0) {
+                step.first = step.total;
+            }
+        } finally {
+            stmt.close();
+        }
+        for (MemoryPoolMXBean pool : pools) {
+            step.heap += pool.getPeakUsage().getUsed();
+        }
+        return step;
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+
+    private static class Step {
+
+        final int size;
+        long first;
+        long total;
+        long rows;
+        long heap;
+
+        Step(int size) {
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package cfh.dbtester;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+// log-linear histogram of nanosecond samples: 32 sub-buckets per power of two (~3% error), no allocation on record
+class Histogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    static final String HEADER_FORMAT = "%-16.16s %8s %10s %10s %10s %10s %10s %10s %10s%n";
+    private static final String LINE_FORMAT = "%-16.16s %8d %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f%n";
+
+    private final long[] counts = new long[BUCKETS];
+    private long count = 0;
+    private long sum = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts[index(nanos)] += 1;
+        count += 1;
+        sum += nanos;
+        if (nanos < min) {
+            min = nanos;
+        }
+        if (nanos > max) {
+            max = nanos;
+        }
+    }
+
+    void add(Histogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    long count() {
+        return count;
+    }
+
+    long sum() {
+        return sum;
+    }
+
+    long min() {
+        return count == 0 ? 0 : min;
+    }
+
+    long max() {
+        return max;
+    }
+
+    double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    // upper bound of the bucket containing the given percentile, clamped to the recorded max
+    long percentile(double percent) {
+        if (count == 0)
+            return 0;
+        long rank = (long) Math.ceil(percent / 100.0 * count);
+        if (rank < 1) {
+            rank = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.max(min, Math.min(max, upper(i)));
+            }
+        }
+        return max;
+    }
+
+    static void printHeader(PrintStream out) {
+        out.printf(HEADER_FORMAT, "[ms]", "count", "min", "mean", "p50", "p90", "p99", "p99.9", "max");
+    }
+
+    void print(PrintStream out, String label) {
+        out.printf(LINE_FORMAT, label, count,
+                millis(min()), mean() / 1e6, millis(percentile(50)), millis(percentile(90)),
+                millis(percentile(99)), millis(percentile(99.9)), millis(max()));
+    }
+
+    static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static int index(long value) {
+        if (value < 2 * SUB_COUNT)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * SUB_COUNT + (int) (value >>> shift);
+    }
+
+    private static long upper(int index) {
+        if (index < 2 * SUB_COUNT)
+            return index;
+        int shift = index / SUB_COUNT - 1;
+        long sub = index % SUB_COUNT + SUB_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+}
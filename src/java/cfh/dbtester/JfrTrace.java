@@ -0,0 +1,152 @@
+package cfh.dbtester;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+
+// the Flight Recorder side of Trace, the only class using jdk.jfr (Java 11+); loaded by reflection for jfr:
+class JfrTrace implements Trace.Recorder {
+
+    @Name("dbtester.Connect")
+    @Label("Connect")
+    @Category("DBTester")
+    @Description("Opening a connection through the driver")
+    static class ConnectEvent extends Event implements Trace.Span {
+        @Label("URL") String url;
+        @Label("User") String user;
+        @Label("Success") boolean success;
+
+        @Override
+        public void commit(Trace.Event event) {
+            Trace.ConnectEvent source = (Trace.ConnectEvent) event;
+            url = source.url;
+            user = source.user;
+            success = source.success;
+            commit();
+        }
+    }
+
+    @Name("dbtester.MetaData")
+    @Label("MetaData")
+    @Category("DBTester")
+    @Description("One DatabaseMetaData call")
+    static class MetaDataEvent extends Event implements Trace.Span {
+        @Label("URL") String url;
+        @Label("Method") String method;
+        @Label("Success") boolean success;
+
+        @Override
+        public void commit(Trace.Event event) {
+            Trace.MetaDataEvent source = (Trace.MetaDataEvent) event;
+            url = source.url;
+            method = source.method;
+            success = source.success;
+            commit();
+        }
+    }
+
+    @Name("dbtester.Execute")
+    @Label("Execute")
+    @Category("DBTester")
+    @Description("Statement.execute, up to the first result")
+    static class ExecuteEvent extends Event implements Trace.Span {
+        @Label("URL") String url;
+        @Label("SQL Hash") int sqlHash;
+        @Label("SQL") String sql;
+        @Label("Result Set") boolean resultSet;
+        @Label("Update Count") int updateCount;
+
+        @Override
+        public void commit(Trace.Event event) {
+            Trace.ExecuteEvent source = (Trace.ExecuteEvent) event;
+            url = source.url;
+            sqlHash = source.sqlHash;
+            sql = source.sql;
+            resultSet = source.resultSet;
+            updateCount = source.updateCount;
+            commit();
+        }
+    }
+
+    @Name("dbtester.MoreResults")
+    @Label("More Results")
+    @Category("DBTester")
+    @Description("Statement.getMoreResults")
+    static class MoreResultsEvent extends Event implements Trace.Span {
+        @Label("SQL Hash") int sqlHash;
+        @Label("Result Set") boolean resultSet;
+        @Label("Update Count") int updateCount;
+
+        @Override
+        public void commit(Trace.Event event) {
+            Trace.MoreResultsEvent source = (Trace.MoreResultsEvent) event;
+            sqlHash = source.sqlHash;
+            resultSet = source.resultSet;
+            updateCount = source.updateCount;
+            commit();
+        }
+    }
+
+    @Name("dbtester.Fetch")
+    @Label("Fetch")
+    @Category("DBTester")
+    @Description("A batch of ResultSet.next calls, including reading and rendering the rows")
+    static class FetchEvent extends Event implements Trace.Span {
+        @Label("SQL Hash") int sqlHash;
+        @Label("Rows") int rows;
+        @Label("Total Rows") long totalRows;
+
+        @Override
+        public void commit(Trace.Event event) {
+            Trace.FetchEvent source = (Trace.FetchEvent) event;
+            sqlHash = source.sqlHash;
+            rows = source.rows;
+            totalRows = source.totalRows;
+            commit();
+        }
+    }
+
+    private final Recording recording;
+
+    // recording with the JDK default settings plus the DBTester events, written to <file> when stopped
+    JfrTrace(File file) throws IOException {
+        try {
+            recording = new Recording(Configuration.getConfiguration("default"));
+        } catch (ParseException ex) {
+            throw new IOException(ex);
+        }
+        recording.setName("DBTester");
+        recording.setDestination(file.toPath());
+        recording.setToDisk(true);
+        recording.start();
+    }
+
+    @Override
+    public Trace.Span span(Trace.Event event) {
+        if (event instanceof Trace.ConnectEvent)
+            return new ConnectEvent();
+        if (event instanceof Trace.MetaDataEvent)
+            return new MetaDataEvent();
+        if (event instanceof Trace.ExecuteEvent)
+            return new ExecuteEvent();
+        if (event instanceof Trace.MoreResultsEvent)
+            return new MoreResultsEvent();
+        if (event instanceof Trace.FetchEvent)
+            return new FetchEvent();
+        return null;
+    }
+
+    @Override
+    public void stop() {
+        recording.stop();
+        recording.close();
+    }
+}
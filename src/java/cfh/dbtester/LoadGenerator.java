@@ -0,0 +1,249 @@
+package cfh.dbtester;
+
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// concurrent sessions running the sql: workload (or connect/release without sql) in a closed loop or at a fixed rate,
+// holding one connection each or borrowing one for every operation; failed operations are timed apart from
+// the successful ones and followed by a pause, so an outage neither looks fast nor spins
+class LoadGenerator {
+
+    private static final long BACKOFF = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ConnectionFactory factory;
+    private final String sql;
+    private final int fetchSize;
+    private final int sessions;
+    private final long duration;
+    private final double rate;
+    private final boolean borrow;
+
+    private final Session[] results;
+    private String threads;
+    private long elapsed;
+
+    LoadGenerator(ConnectionFactory factory, String sql, int fetchSize, int sessions, int seconds, double rate, boolean borrow) {
+        this.factory = factory;
+        this.sql = sql;
+        this.fetchSize = fetchSize;
+        this.sessions = sessions;
+        this.duration = TimeUnit.SECONDS.toNanos(seconds);
+        this.rate = rate;
+        this.borrow = borrow;
+        results = new Session[sessions];
+    }
+
+    void run() throws InterruptedException {
+        ExecutorService executor = newExecutor(sessions);
+        try {
+            CountDownLatch ready = new CountDownLatch(sessions);
+            CountDownLatch go = new CountDownLatch(1);
+            for (int i = 0; i < sessions; i++) {
+                results[i] = new Session(ready, go);
+                executor.execute(results[i]);
+            }
+            ready.await();
+            long start = System.nanoTime();
+            for (Session session : results) {
+                session.deadline = start + duration;
+            }
+            go.countDown();
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            elapsed = System.nanoTime() - start;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    void report(PrintStream out) {
+        out.printf("Threads: %s, sessions: %d, rate: %s%n", threads, sessions,
+                rate > 0 ? String.format("%.1f/s", rate) : "closed loop");
+        long errors = 0;
+        Histogram.printHeader(out);
+        for (int i = 0; i < results.length; i++) {
+            Session session = results[i];
+            session.latency.print(out, "session " + (i+1));
+            errors += session.errors;
+            if (session.error != null) {
+                out.printf("    %s%n", session.error);
+            }
+        }
+        Histogram all = total();
+        all.print(out, "all");
+        Histogram failed = new Histogram();
+        for (Session session : results) {
+            failed.add(session.failures);
+        }
+        if (failed.count() > 0) {
+            failed.print(out, "failed");
+        }
+        out.printf("%d operations in %.3f s: %.1f operations/s, %d errors%n",
+                all.count(), elapsed / 1e9, throughput(), errors);
+    }
+
+    Histogram total() {
+        Histogram all = new Histogram();
+        for (Session session : results) {
+            all.add(session.latency);
+        }
+        return all;
+    }
+
+    double throughput() {
+        return elapsed == 0 ? 0 : total().count() * 1e9 / elapsed;
+    }
+
+    // virtual threads where available (Java 21+), one platform thread per session otherwise
+    private ExecutorService newExecutor(int count) {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            threads = "virtual";
+            return (ExecutorService) method.invoke(null);
+        } catch (Exception ex) {
+            threads = "platform";
+            return Executors.newFixedThreadPool(count);
+        }
+    }
+
+    private class Session implements Runnable {
+
+        private final CountDownLatch ready;
+        private final CountDownLatch go;
+        private final Histogram latency = new Histogram();
+        private final Histogram failures = new Histogram();
+        private volatile long deadline;
+        private long errors = 0;
+        private Exception error = null;
+
+        Session(CountDownLatch ready, CountDownLatch go) {
+            this.ready = ready;
+            this.go = go;
+        }
+
+        @Override
+        public void run() {
+            Connection conn = null;
+            Statement stmt = null;
+            try {
+                if (sql != null && !borrow) {
+                    conn = factory.open();
+                    stmt = createStatement(conn);
+                }
+            } catch (SQLException ex) {
+                errors += 1;
+                error = ex;
+            } finally {
+                ready.countDown();
+            }
+            try {
+                go.await();
+                if (error != null)
+                    return;
+                // at a fixed rate the latency is taken from the intended start, so stalls are not hidden
+                long interval = rate > 0 ? (long) (sessions * 1e9 / rate) : 0;
+                long next = System.nanoTime();
+                while (next < deadline) {
+                    if (interval > 0) {
+                        long wait = next - System.nanoTime();
+                        if (wait > 0) {
+                            LockSupport.parkNanos(wait);
+                        }
+                    } else {
+                        next = System.nanoTime();
+                    }
+                    boolean failed = false;
+                    try {
+                        if (stmt != null) {
+                            execute(stmt);
+                        } else if (sql != null) {
+                            Connection borrowed = factory.open();
+                            try {
+                                Statement statement = createStatement(borrowed);
+                                try {
+                                    execute(statement);
+                                } finally {
+                                    statement.close();
+                                }
+                            } finally {
+                                factory.release(borrowed);
+                            }
+                        } else {
+                            factory.release(factory.open());
+                        }
+                    } catch (SQLException ex) {
+                        errors += 1;
+                        error = ex;
+                        if (stmt != null)
+                            break;
+                        failed = true;
+                    }
+                    long end = System.nanoTime();
+                    if (failed) {
+                        failures.record(end - next);
+                        if (interval == 0) {
+                            // closed loop: wait before the next attempt, at a fixed rate the schedule paces the retries
+                            LockSupport.parkNanos(BACKOFF);
+                            end = System.nanoTime();
+                        }
+                    } else {
+                        latency.record(end - next);
+                    }
+                    next = interval > 0 ? next + Math.max(interval, failed ? BACKOFF : 0) : end;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    if (stmt != null) {
+                        stmt.close();
+                    }
+                    if (conn != null) {
+                        factory.release(conn);
+                    }
+                } catch (SQLException ex) {
+                    errors += 1;
+                }
+            }
+        }
+
+        private Statement createStatement(Connection conn) throws SQLException {
+            Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if (fetchSize > 0) {
+                stmt.setFetchSize(fetchSize);
+            }
+            return stmt;
+        }
+
+        private void execute(Statement stmt) throws SQLException {
+            boolean isResultSet = stmt.execute(sql);
+            int count = stmt.getUpdateCount();
+            while (isResultSet || count != -1) {
+                if (isResultSet) {
+                    ResultSet rset = stmt.getResultSet();
+                    try {
+                        ColumnReader[] readers = ColumnReader.create(rset.getMetaData());
+                        while (rset.next()) {
+                            for (ColumnReader reader : readers) {
+                                reader.read(rset);
+                            }
+                        }
+                    } finally {
+                        rset.close();
+                    }
+                }
+                isResultSet = stmt.getMoreResults();
+                count = stmt.getUpdateCount();
+            }
+        }
+    }
+}
@@ -1,47 +1,343 @@
 package cfh.dbtester;
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
 
 public class LogPrinter extends PrintStream {
 
     private final PrintStream out;
     private boolean quiet = false;
-    
+    private volatile AsyncWriter async = null;
+    private final ThreadLocal<Capture> capture = new ThreadLocal<Capture>();
+
     public LogPrinter(PrintStream out, String filename) throws FileNotFoundException {
         super(new FileOutputStream(filename, true));
         this.out = out;
     }
-    
+
     void setQuiet(boolean quiet) {
-        this.quiet = quiet;
+        Capture current = capture.get();
+        if (current != null) {
+            current.setQuiet(quiet);
+        } else {
+            this.quiet = quiet;
+        }
+    }
+
+    // output of the calling thread goes into a buffer until stopCapture, to be written later by replay
+    void startCapture() {
+        capture.set(new Capture(quiet));
+    }
+
+    Capture stopCapture() {
+        Capture current = capture.get();
+        capture.remove();
+        return current;
+    }
+
+    synchronized void replay(Capture captured) {
+        boolean saved = quiet;
+        try {
+            for (Segment segment : captured.segments) {
+                quiet = segment.quiet;
+                write(segment.bytes.toByteArray(), 0, segment.bytes.size());
+            }
+        } finally {
+            quiet = saved;
+        }
+    }
+
+    // file and console are written by a background thread, writing only copies into the buffers
+    synchronized void startAsync(int capacity) {
+        if (async != null)
+            return;
+        flush();
+        async = new AsyncWriter(super.out, out, capacity);
+        async.start();
+        Runtime.getRuntime().addShutdownHook(new Thread("LogPrinter-shutdown") {
+            @Override
+            public void run() {
+                LogPrinter.this.flush();
+            }
+        });
     }
 
     @Override
     public void close() {
+        AsyncWriter writer = async;
+        if (writer != null) {
+            try {
+                writer.shutdown();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                setError();
+            }
+            if (writer.error != null) {
+                setError();
+            }
+            async = null;
+        }
         super.close();
+        out.flush();
     }
-    
+
     @Override
     public void flush() {
+        AsyncWriter writer = async;
+        if (writer != null) {
+            try {
+                writer.drain();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                setError();
+            }
+        }
         super.flush();
         out.flush();
     }
-    
+
     @Override
     public void write(byte[] buf, int off, int len) {
+        Capture current = capture.get();
+        if (current != null) {
+            current.write(buf, off, len);
+            return;
+        }
+        AsyncWriter writer = async;
+        if (writer != null) {
+            try {
+                writer.write(buf, off, len, !quiet);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                setError();
+            }
+            return;
+        }
         super.write(buf, off, len);
         if (!quiet) {
             out.print(new String(buf, off, len));
         }
     }
-    
+
     @Override
     public void write(int b) {
+        Capture current = capture.get();
+        if (current != null) {
+            current.write(new byte[] { (byte) b }, 0, 1);
+            return;
+        }
+        AsyncWriter writer = async;
+        if (writer != null) {
+            try {
+                writer.write(b, !quiet);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                setError();
+            }
+            return;
+        }
         super.write(b);
         if (!quiet) {
             out.print((char)b);
         }
     }
+
+    static class Capture {
+
+        private final List<Segment> segments = new ArrayList<Segment>();
+        private Segment current;
+
+        Capture(boolean quiet) {
+            current = new Segment(quiet);
+            segments.add(current);
+        }
+
+        void setQuiet(boolean quiet) {
+            if (quiet == current.quiet)
+                return;
+            if (current.bytes.size() == 0) {
+                current.quiet = quiet;
+            } else {
+                current = new Segment(quiet);
+                segments.add(current);
+            }
+        }
+
+        void write(byte[] buf, int off, int len) {
+            current.bytes.write(buf, off, len);
+        }
+    }
+
+    private static class Segment {
+
+        private boolean quiet;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        Segment(boolean quiet) {
+            this.quiet = quiet;
+        }
+    }
+
+    private static class Ring {
+
+        private final byte[] buffer;
+        private long head = 0;
+        private long tail = 0;
+
+        Ring(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+        boolean isEmpty() {
+            return head == tail;
+        }
+
+        int free() {
+            return buffer.length - (int) (tail - head);
+        }
+
+        int put(byte[] buf, int off, int len) {
+            int index = (int) (tail % buffer.length);
+            int count = Math.min(len, Math.min(free(), buffer.length - index));
+            System.arraycopy(buf, off, buffer, index, count);
+            tail += count;
+            return count;
+        }
+
+        void put(int b) {
+            buffer[(int) (tail % buffer.length)] = (byte) b;
+            tail += 1;
+        }
+
+        int start() {
+            return (int) (head % buffer.length);
+        }
+
+        int chunk() {
+            return (int) Math.min(tail - head, buffer.length - start());
+        }
+    }
+
+    private static class AsyncWriter extends Thread {
+
+        private final OutputStream file;
+        private final OutputStream console;
+        private final Ring fileRing;
+        private final Ring consoleRing;
+        private boolean busy = false;
+        private boolean closed = false;
+        private volatile IOException error = null;
+
+        AsyncWriter(OutputStream file, OutputStream console, int capacity) {
+            super("LogPrinter");
+            setDaemon(true);
+            this.file = file;
+            this.console = console;
+            fileRing = new Ring(capacity);
+            consoleRing = new Ring(capacity);
+        }
+
+        synchronized void write(byte[] buf, int off, int len, boolean echo) throws InterruptedException {
+            put(fileRing, buf, off, len);
+            if (echo) {
+                put(consoleRing, buf, off, len);
+            }
+        }
+
+        synchronized void write(int b, boolean echo) throws InterruptedException {
+            put(fileRing, b);
+            if (echo) {
+                put(consoleRing, b);
+            }
+        }
+
+        private void put(Ring ring, byte[] buf, int off, int len) throws InterruptedException {
+            while (len > 0) {
+                while (ring.free() == 0) {
+                    wait();
+                }
+                int count = ring.put(buf, off, len);
+                off += count;
+                len -= count;
+                notifyAll();
+            }
+        }
+
+        private void put(Ring ring, int b) throws InterruptedException {
+            while (ring.free() == 0) {
+                wait();
+            }
+            ring.put(b);
+            notifyAll();
+        }
+
+        synchronized void drain() throws InterruptedException {
+            while (busy || !fileRing.isEmpty() || !consoleRing.isEmpty()) {
+                wait();
+            }
+        }
+
+        void shutdown() throws InterruptedException {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            join();
+        }
+
+        @Override
+        public void run() {
+            boolean fileTurn = true;
+            while (true) {
+                Ring ring;
+                OutputStream sink;
+                int start;
+                int len;
+                boolean last;
+                synchronized (this) {
+                    try {
+                        while (fileRing.isEmpty() && consoleRing.isEmpty() && !closed) {
+                            wait();
+                        }
+                    } catch (InterruptedException ex) {
+                        closed = true;
+                    }
+                    if (fileRing.isEmpty() && consoleRing.isEmpty()) {
+                        break;
+                    }
+                    if (consoleRing.isEmpty() || (fileTurn && !fileRing.isEmpty())) {
+                        ring = fileRing;
+                        sink = file;
+                    } else {
+                        ring = consoleRing;
+                        sink = console;
+                    }
+                    fileTurn = ring != fileRing;
+                    start = ring.start();
+                    len = ring.chunk();
+                    last = len == ring.tail - ring.head;
+                    busy = true;
+                }
+                try {
+                    sink.write(ring.buffer, start, len);
+                    if (last) {
+                        sink.flush();
+                    }
+                } catch (IOException ex) {
+                    error = ex;
+                }
+                synchronized (this) {
+                    ring.head += len;
+                    busy = false;
+                    notifyAll();
+                }
+            }
+        }
+    }
 }
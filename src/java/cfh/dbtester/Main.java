@@ -1,9 +1,15 @@
 package cfh.dbtester;
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.net.InetAddress;
@@ -12,6 +18,7 @@ import java.net.InterfaceAddress;
 import java.net.NetworkInterface;
 import java.net.Socket;
 import java.net.SocketException;
+import java.net.URL;
 import java.net.UnknownHostException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -34,6 +41,13 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 
 public class Main {
@@ -41,6 +55,12 @@ public class Main {
     private static final String VERSION = "1.2";
     
     private static final String DRIVERS_INI = "resources/drivers.ini";
+    private static final String DRIVER_SERVICES = "META-INF/services/java.sql.Driver";
+    
+    private static final int ASYNC_BUFFER = 1 << 20;
+    private static final int SHUTDOWN_WAIT = 10;
+    private static final int FETCH_BATCH = 100;
+    private static final int EXPORT_FETCH = 1000;
     
     private static final String SECTIONS = "cdelmnpz";
 
@@ -53,22 +73,29 @@ public class Main {
         try {
             output = new LogPrinter(System.out, "dbtester.log");
             System.setOut(output);
+            Main m;
             try {
-                Main m = new Main(args);
+                m = new Main(args);
                 m.run();
             } finally {
                 output.close();
             }
+            if (m.failed) {
+                System.exit(2);
+            }
         } catch (IOException ex) {
             ex.printStackTrace();
         }
     }
 
     private final List<String> drivers = new ArrayList<String>();
+    private final Map<String, List<String>> driverPrefixes = new HashMap<String, List<String>>();
+    private volatile Driver targetDriver = null;
     private final Map<Integer, String> types = new HashMap<Integer, String>();
     
     private final String[] args;
     private boolean quiet = false;
+    private boolean failed = false;
     private final int width;
     private String url = null;
     private String user = null;
@@ -76,6 +103,47 @@ public class Main {
     private boolean tables = false;
     private List<String> columns = new ArrayList<String>();
     private String sql = null;
+    private int fetchSize = 0;
+    private int connectCount = 0;
+    private int connectWarmup = 0;
+    private int sqlRepeat = 0;
+    private int sqlWarmup = 0;
+    private boolean render = true;
+    private boolean explain = false;
+    private int preparedCount = 0;
+    private int preparedWarmup = 0;
+    private String values = null;
+    private int loadSessions = 0;
+    private int loadSeconds = 10;
+    private double loadRate = 0;
+    private int poolIdle = -1;
+    private boolean snapshot = false;
+    private boolean snapshotRefresh = false;
+    private String export = null;
+    private String script = null;
+    private int batchSize = 100;
+    private int commitInterval = 0;
+    private String delimiter = null;
+    private int sweepRuns = 0;
+    private String jfr = null;
+    private String report = null;
+    private Metrics metrics = null;
+    private Metrics.Metric executeTimer = null;
+    private Metrics.Metric firstRowTimer = null;
+    private Metrics.Metric fetchTimer = null;
+    private Metrics.Metric exportTimer = null;
+    private Metrics.Metric rowsCounter = null;
+    private Metrics.Metric fetchedBytes = null;
+    private Metrics.Metric exportedBytes = null;
+    private QueryPhases.Timers phaseTimers = null;
+    private String insertTable = null;
+    private int insertRows = 1000;
+    private int insertThreads = 1;
+    private boolean insertTruncate = false;
+    private int watchSeconds = 0;
+    private int watchMinutes = 0;
+    private boolean watchReuse = false;
+    private int httpPort = -1;
     private String sections = null;
 
     private final String SEPARATOR;
@@ -91,6 +159,16 @@ public class Main {
                 usage();
                 System.exit(1);
             }
+            if (arg.equals("a") || arg.equals("async")) {
+                output.startAsync(ASYNC_BUFFER);
+                continue;
+            }
+            if (arg.startsWith("r:") || arg.startsWith("report:")) {
+                report = args[i-1].substring(arg.indexOf(':') + 2);
+                metrics = new Metrics();
+                createTimers();
+                continue;
+            }
             if (arg.equals("q") || arg.equals("quiet")) {
                 quiet = true;
                 output.setQuiet(true);
@@ -136,6 +214,137 @@ public class Main {
                         } else {
                             System.out.printf("no table given at: %s%n", option);
                         }
+                    } else if (option.startsWith("fetch:")) {
+                        try {
+                            fetchSize = Integer.parseInt(option.substring(6));
+                        } catch (NumberFormatException ex) {
+                            System.out.printf("invalid fetch size: %s%n", option);
+                        }
+                    } else if (option.startsWith("connect:")) {
+                        String[] tokens = option.split(":", 3);
+                        try {
+                            connectCount = Integer.parseInt(tokens[1]);
+                            if (tokens.length > 2) {
+                                connectWarmup = Integer.parseInt(tokens[2]);
+                            }
+                        } catch (NumberFormatException ex) {
+                            System.out.printf("invalid connect count: %s%n", option);
+                        }
+                    } else if (option.startsWith("repeat:")) {
+                        String[] tokens = option.split(":", 3);
+                        try {
+                            sqlRepeat = Integer.parseInt(tokens[1]);
+                            if (tokens.length > 2) {
+                                sqlWarmup = Integer.parseInt(tokens[2]);
+                            }
+                        } catch (NumberFormatException ex) {
+                            System.out.printf("invalid repeat count: %s%n", option);
+                        }
+                    } else if (option.startsWith("load:")) {
+                        String[] tokens = option.split(":", 4);
+                        try {
+                            loadSessions = Integer.parseInt(tokens[1]);
+                            if (tokens.length > 2) {
+                                loadSeconds = Integer.parseInt(tokens[2]);
+                            }
+                            if (tokens.length > 3) {
+                                loadRate = Double.parseDouble(tokens[3]);
+                            }
+                        } catch (NumberFormatException ex) {
+                            System.out.printf("invalid load: %s%n", option);
+                        }
+                    } else if (option.equals("pool")) {
+                        poolIdle = 0;
+                    } else if (option.startsWith("pool:")) {
+                        try {
+                            poolIdle = Integer.parseInt(option.substring(5));
+                        } catch (NumberFormatException ex) {
+                            System.out.printf("invalid pool size: %s%n", option);
+                        }
+                    } else if (option.equals("snapshot")) {
+                        snapshot = true;
+                    } else if (option.equals("snapshot:refresh")) {
+                        snapshot = true;
+                        snapshotRefresh = true;
+                    } else if (option.startsWith("export:")) {
+                        export = args[i-1].substring(7);
+                    } else if (option.startsWith("script:")) {
+                        script = args[i-1].substring(7);
+                    } else if (option.startsWith("delimiter:")) {
+                        delimiter = args[i-1].substring(10);
+                    } else if (option.startsWith("batch:")) {
+                        try {
+                            batchSize = Integer.parseInt(option.substring(6));
+                        } catch (NumberFormatException ex) {
+                            System.out.printf("invalid batch size: %s%n", option);
+                        }
+                    } else if (option.startsWith("commit:")) {
+                        try {
+                            commitInterval = Integer.parseInt(option.substring(7));
+                        } catch (NumberFormatException ex) {
+                            System.out.printf("invalid commit interval: %s%n", option);
+                        }
+                    } else if (option.startsWith("insert:")) {
+                        String[] tokens = args[i-1].substring(7).split(":", 3);
+                        insertTable = tokens[0];
+                        try {
+                            if (tokens.length > 1) {
+                                insertRows = Integer.parseInt(tokens[1]);
+                            }
+                            if (tokens.length > 2) {
+                                insertThreads = Math.max(1, Integer.parseInt(tokens[2]));
+                            }
+                        } catch (NumberFormatException ex) {
+                            System.out.printf("invalid insert: %s%n", option);
+                        }
+                    } else if (option.equals("cleanup:rollback")) {
+                        insertTruncate = false;
+                    } else if (option.equals("cleanup:truncate")) {
+                        insertTruncate = true;
+                    } else if (option.equals("fetchsweep")) {
+                        sweepRuns = 1;
+                    } else if (option.startsWith("fetchsweep:")) {
+                        try {
+                            sweepRuns = Integer.parseInt(option.substring(11));
+                        } catch (NumberFormatException ex) {
+                            System.out.printf("invalid fetchsweep runs: %s%n", option);
+                        }
+                    } else if (option.startsWith("watch:")) {
+                        String[] tokens = option.split(":", 3);
+                        try {
+                            watchSeconds = Integer.parseInt(tokens[1]);
+                            if (tokens.length > 2) {
+                                watchMinutes = Integer.parseInt(tokens[2]);
+                            }
+                        } catch (NumberFormatException ex) {
+                            System.out.printf("invalid watch: %s%n", option);
+                        }
+                    } else if (option.equals("reuse")) {
+                        watchReuse = true;
+                    } else if (option.startsWith("http:")) {
+                        try {
+                            httpPort = Integer.parseInt(option.substring(5));
+                        } catch (NumberFormatException ex) {
+                            System.out.printf("invalid http port: %s%n", option);
+                        }
+                    } else if (option.startsWith("jfr:")) {
+                        jfr = args[i-1].substring(4);
+                    } else if (option.startsWith("prepared:")) {
+                        String[] tokens = option.split(":", 3);
+                        try {
+                            preparedCount = Integer.parseInt(tokens[1]);
+                            if (tokens.length > 2) {
+                                preparedWarmup = Integer.parseInt(tokens[2]);
+                            }
+                        } catch (NumberFormatException ex) {
+                            System.out.printf("invalid prepared count: %s%n", option);
+                        }
+                    } else if (option.startsWith("values:")) {
+                        values = args[i-1].substring(7);
+                    } else if (option.equals("explain")) {
+                        explain = true;
+                    } else if (option.equals("norender")) {
+                        render = false;
                     } else if (option.startsWith("sql:")) {
                         sql = option.substring(4);
                         for(;i < args.length; i++) {
@@ -162,11 +371,13 @@ public class Main {
         System.out.println();
         System.out.println("DBTester v " + VERSION);
         System.out.println();
-        System.out.println("Usage: java -jar DBTester.jar [-h] [-<width>] [-<section>...] [<url> [<user> <password> [<arguments>...]]]");
+        System.out.println("Usage: java -jar DBTester.jar [-h] [-a] [-q] [-r:<file>] [-<width>] [-<section>...] [<url> [<user> <password> [<arguments>...]]]");
         System.out.println();
         System.out.println("Options:");
         System.out.println("    -h            - this help");
         System.out.println("    -q            - quiet, no output, only from sql:");
+        System.out.println("    -a            - asynchronous output, console and log written in background");
+        System.out.println("    -r:<file>     - report of all measured times, <file>.json and OpenMetrics <file>.prom");
         System.out.println("    -<width>      - sets output width, default 100");
         System.out.println("    -<section>... - restricts output to given section");
         System.out.println("                    c - classpath");
@@ -184,8 +395,18 @@ public class Main {
         System.out.println("    jdbc:oracle:thin:<user>/<passwd>@<host>:<port|1521>:<sid>");
         System.out.println("    jdbc:oracle:oci8:<user>/<passwd>@<host>:<port|1521>:<sid>");
         System.out.println("         ...");
+        System.out.println("    jdbc:dbtester:mock[:<key>=<value>;...] - built-in driver without database, keys:");
+        System.out.println("         connect, prepare, execute, fetch (latency ms), fetchsize, rows, types, columns,");
+        System.out.println("         schemas, tables, tablecolumns");
         System.out.println("    ping:<host>[:<timeout>] - check if the host is reachable");
-        System.out.println("    tcp:<host>:<portnumber> - open TCP");
+        System.out.println("    tcp:<host>:<portnumber>[:<timeout>] - open TCP");
+        System.out.println("         <host> can be a comma separated list of hosts and IPv4 ranges like 10.0.0.0/24,");
+        System.out.println("         <portnumber> a list of ports and port ranges like 1521,5432-5434");
+        System.out.println("    tcpbench:[<host>]:<port>[:<connects>[:<roundtrips>[:<megabytes>]]] - TCP latency and throughput,");
+        System.out.println("         round trips and megabytes need an echo: far end, without <host> one is started locally");
+        System.out.println("    echo:<port>[:<seconds>] - echo server for tcpbench:, runs until stopped");
+        System.out.println("    bench:[[save:]<file>] - micro benchmarks of output and metadata code without a database,");
+        System.out.println("         compared with the baseline <file> (exit code 2 on regression), written if missing or save:");
         System.out.println("User:");
         System.out.println("    user to use for connecting");
         System.out.println("    \"-\" to use user from URL");
@@ -193,6 +414,42 @@ public class Main {
         System.out.println("Arguments:");
         System.out.println("    tables - show list of tables");
         System.out.println("    columns:<table> - show columns of <table>");
+        System.out.println("    snapshot[:refresh] - tables and columns: from a snapshot file, only changed schemas are read");
+        System.out.println("    fetch:<rows> - fetch size used by sql:, default from driver");
+        System.out.println("    fetchsweep[:<runs>] - run sql: with fetch sizes from 10 to 10000, show time to first row,");
+        System.out.println("                    total time, rows/s and peak heap, recommend a fetch size");
+        System.out.println("    connect:<count>[:<warmup>] - open and close <count> connections, show latency percentiles");
+        System.out.println("    repeat:<count>[:<warmup>] - run sql: <count> times, show latency and throughput");
+        System.out.println("    norender - repeat: only fetches the rows, without formatting them");
+        System.out.println("    prepared:<count>[:<warmup>] - run sql: with ? parameters as Statement with literals,");
+        System.out.println("                    PreparedStatement prepared each time (statement cache off/on) and reused");
+        System.out.println("    values:<file> - parameters for prepared:, one comma separated row per line, default 1, 2, ...;");
+        System.out.println("                    queries cycle through the rows, DML needs one row per execution;");
+        System.out.println("                    bound by the driver's parameter types, as strings without them,");
+        System.out.println("                    int:<n>, decimal:<n>, double:<n> or string:<text> force a type");
+        System.out.println("    explain - execution plan of sql: with runtime statistics from the server (PostgreSQL,");
+        System.out.println("                    MySQL, MariaDB, Oracle, SQL Server, EXPLAIN otherwise) instead of executing it,");
+        System.out.println("                    always rolled back, Oracle's STATISTICS_LEVEL is set to ALL and restored");
+        System.out.println("    load:<sessions>[:<seconds>[:<rate>]] - concurrent sessions running sql: (or connecting),");
+        System.out.println("                    closed loop or at <rate> operations/s in total, default 10 seconds");
+        System.out.println("    pool[:<maxidle>] - run connect: and load: without and with a connection pool,");
+        System.out.println("                    load: sessions borrow a connection for each operation");
+        System.out.println("    export:<file> - write sql: results to <file>, JSON Lines for *.jsonl, CSV otherwise,");
+        System.out.println("                    further result sets to <file>-2, <file>-3, ... before the extension;");
+        System.out.println("                    PostgreSQL and MySQL are switched to a streaming fetch meanwhile");
+        System.out.println("    script:<file> - executes the statements of a SQL script, DML in batches");
+        System.out.println("    delimiter:<text> - script: statements end with <text> instead of ';', with / or GO only at such lines");
+        System.out.println("    batch:<size> - batch size for script:, default 100, 1 for no batching");
+        System.out.println("    commit:<count> - script: commits every <count> statements, default auto-commit");
+        System.out.println("    insert:<table>[:<rows>[:<threads>]] - insert generated rows in batches of 1, 10, 100, ...,");
+        System.out.println("                    show rows/s per batch size, default 1000 rows and 1 thread");
+        System.out.println("    cleanup:rollback|truncate - insert: rolls back each step (default) or commits and truncates,");
+        System.out.println("                    truncate only on a table that was empty before");
+        System.out.println("    watch:<seconds>[:<minutes>] - connect and run sql: every <seconds> until stopped or for <minutes>,");
+        System.out.println("                    one line per minute, 1, 5 and 15 minute percentiles at the end (also on Ctrl-C)");
+        System.out.println("    reuse - watch: keeps the connection open, reconnecting after errors");
+        System.out.println("    http:<port> - watch: serves the windows on localhost, /metrics as OpenMetrics, / as JSON");
+        System.out.println("    jfr:<file> - Flight Recorder recording with connect, metadata, execute and fetch events (Java 11+)");
         System.out.println("    sql:<sql> - executes SQL command");
         System.out.println();
     }
@@ -209,7 +466,9 @@ public class Main {
             while ((line = rd.readLine()) != null) {
                 if (line.trim().isEmpty() || line.trim().startsWith("#"))
                     continue;
-                drivers.add(line);
+                String[] tokens = line.trim().split("\\s+");
+                drivers.add(tokens[0]);
+                driverPrefixes.put(tokens[0], Arrays.asList(tokens).subList(1, tokens.length));
             }
         } finally {
             in.close();
@@ -242,17 +501,95 @@ public class Main {
         for (String arg : args) {
             System.out.printf("%s%n", arg);
         }
-        if (runSection("n")) showNetwork();
-        showDrivers(runSection("d"));
-        if (runSection("e")) showEncodings();
-        if (runSection("m")) showDriveManager();
-        if (runSection("c")) showClassPath();
-        if (runSection("l")) showLibraryPath();
-        if (runSection("p")) showProperties();
-        if (url != null) showURL();
+        List<Section> list = new ArrayList<Section>();
+        if (runSection("n")) list.add(new Section("network", null) {
+            @Override void show() { showNetwork(); }
+        });
+        final Section drivers = new Section("drivers", null) {
+            @Override void show() { showDrivers(runSection("d")); }
+        };
+        list.add(drivers);
+        if (runSection("e")) list.add(new Section("encoding", null) {
+            @Override void show() { showEncodings(); }
+        });
+        if (runSection("m")) list.add(new Section("manager", drivers) {
+            @Override void show() { showDriveManager(); }
+        });
+        if (runSection("c")) list.add(new Section("classpath", null) {
+            @Override void show() { showClassPath(); }
+        });
+        if (runSection("l")) list.add(new Section("libraries", null) {
+            @Override void show() { showLibraryPath(); }
+        });
+        if (runSection("p")) list.add(new Section("properties", null) {
+            @Override void show() { showProperties(); }
+        });
+        runSections(list);
+        boolean recording = false;
+        if (jfr != null) {
+            try {
+                Trace.start(new File(jfr));
+                recording = true;
+            } catch (IOException ex) {
+                exception("JFR: %s%n", ex);
+            }
+        }
+        try {
+            if (url != null) showURL();
+        } finally {
+            if (recording) {
+                Trace.stop();
+                System.out.println(SEPARATOR);
+                System.out.printf("JFR recording written to %s%n", jfr);
+            }
+        }
+        if (metrics != null) {
+            try {
+                metrics.write(new File(report));
+            } catch (IOException ex) {
+                exception("Report: %s%n", ex);
+            }
+        }
         System.out.println(SEPARATOR);
     }
     
+    // sections run concurrently into their own buffers, written in the given order
+    private void runSections(List<Section> list) {
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(list.size());
+        try {
+            List<Future<LogPrinter.Capture>> futures = new ArrayList<Future<LogPrinter.Capture>>();
+            for (Section section : list) {
+                futures.add(executor.submit(section));
+            }
+            for (int i = 0; i < list.size(); i++) {
+                try {
+                    output.replay(futures.get(i).get());
+                } catch (ExecutionException ex) {
+                    exception("%s: %s%n", list.get(i).name, ex.getCause());
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            exception("Sections: %s%n", ex);
+        } finally {
+            executor.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - start;
+        StringBuilder times = new StringBuilder();
+        for (Section section : list) {
+            times.append(String.format("%s %.1f ms, ", section.name, section.nanos / 1e6));
+            if (metrics != null) {
+                metrics.time("section", "Sections before the URL", section.nanos, "section", section.name);
+            }
+        }
+        if (metrics != null) {
+            metrics.time("sections_wall", "Wall time of the concurrent sections", elapsed);
+        }
+        System.out.println(SUBSEPARATOR);
+        System.out.printf("Sections: %swall %.1f ms%n", times, elapsed / 1e6);
+    }
+    
     private boolean runSection(String section) {
         return sections == null || sections.contains(section);
     }
@@ -323,15 +660,45 @@ public class Main {
         }
     }
     
+    // only drivers whose URL prefix matches are initialized, all if no prefix matches a jdbc: URL; that only
+    // spares the others on Java 9+, before the first registerDriver initializes DriverManager, which loads and
+    // instantiates every service-registered driver (java.sql.Driver files) at once
     private void showDrivers(boolean show) {
         if (show) {
             printHeader("DRIVERS", null);
         }
+        boolean jdbc = url != null && url.startsWith("jdbc:");
+        boolean matched = false;
+        for (String driver : drivers) {
+            matched |= matchesURL(driver);
+        }
+        ClassLoader loader = ClassLoader.getSystemClassLoader();
+        int initialized = 0;
+        int skipped = 0;
+        long targetTime = 0;
         for (String driver : drivers) {
             try {
-                Class<?> cl = Class.forName(driver);
+                long t0 = System.nanoTime();
+                Class<?> cl = Class.forName(driver, false, loader);
+                long t1 = System.nanoTime();
+                String state;
+                if (jdbc && (matched ? matchesURL(driver) : true)) {
+                    Class.forName(driver, true, loader);
+                    long t2 = System.nanoTime();
+                    initialized += 1;
+                    state = String.format("initialized %.1f ms", (t2 - t1) / 1e6);
+                    if (matched && targetDriver == null) {
+                        targetDriver = instantiate(cl);
+                        // loading, static initialization (registration) and the instance used for connecting
+                        targetTime = System.nanoTime() - t0;
+                    }
+                } else {
+                    skipped += 1;
+                    state = "not initialized";
+                }
                 if (show) {
-                    System.out.printf("%s OK  (%s)%n", driver, cl.getProtectionDomain().getCodeSource().getLocation());
+                    System.out.printf("%s OK  (%s) load %.1f ms, %s%n", driver, 
+                            cl.getProtectionDomain().getCodeSource().getLocation(), (t1 - t0) / 1e6, state);
                 }
             } catch (ClassNotFoundException ex) {
                 if (show) {
@@ -339,6 +706,75 @@ public class Main {
                 }
             }
         }
+        if (show) {
+            try {
+                Enumeration<URL> services = loader.getResources(DRIVER_SERVICES);
+                while (services.hasMoreElements()) {
+                    URL service = services.nextElement();
+                    for (String driver : readServices(service)) {
+                        if (!drivers.contains(driver)) {
+                            System.out.printf("%s service  (%s)%n", driver, service);
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                exception("Services: %s%n", ex);
+            }
+            System.out.printf("%d initialized, %d not initialized here%s%n", initialized, skipped,
+                    targetDriver == null ? "" : String.format(", connecting with %s (load and registration %.1f ms%s)",
+                            targetDriver.getClass().getName(), targetTime / 1e6,
+                            lazyDriverManager() ? "" : " including DriverManager"));
+            if (!lazyDriverManager() && initialized > 0) {
+                System.out.printf("Java %s: the first registerDriver started DriverManager, which initialized every service driver too%n",
+                        System.getProperty("java.specification.version"));
+            }
+        }
+    }
+
+    // Java 9+ loads the service drivers on the first getConnection, getDriver or getDrivers instead of in
+    // DriverManager's static initializer
+    private static boolean lazyDriverManager() {
+        return !System.getProperty("java.specification.version").startsWith("1.");
+    }
+
+    private boolean matchesURL(String driver) {
+        if (url == null)
+            return false;
+        for (String prefix : driverPrefixes.get(driver)) {
+            if (url.startsWith(prefix))
+                return true;
+        }
+        return false;
+    }
+
+    private static Driver instantiate(Class<?> cl) {
+        try {
+            return (Driver) cl.getDeclaredConstructor().newInstance();
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    // class names listed in a service file, without loading them
+    private static List<String> readServices(URL service) throws IOException {
+        List<String> names = new ArrayList<String>();
+        InputStream in = service.openStream();
+        try {
+            BufferedReader rd = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = rd.readLine()) != null) {
+                int comment = line.indexOf('#');
+                if (comment != -1) {
+                    line = line.substring(0, comment);
+                }
+                if (!line.trim().isEmpty()) {
+                    names.add(line.trim());
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return names;
     }
     
     private void showEncodings() {
@@ -384,6 +820,7 @@ public class Main {
         return f.toString();
     }
     
+    // getDrivers() initializes every service driver, on every Java version
     private void showDriveManager() {
         printHeader("DRIVE MANAGER", null);
         System.out.printf("Login timeout: %d seconds%n", DriverManager.getLoginTimeout());
@@ -435,6 +872,12 @@ public class Main {
             printPing(url.substring(5));
         } else if (url.startsWith("tcp:")) {
             printTCP(url.substring(4));
+        } else if (url.startsWith("tcpbench:")) {
+            printTCPBenchmark(url.substring(9));
+        } else if (url.startsWith("echo:")) {
+            printEcho(url.substring(5));
+        } else if (url.startsWith("bench:")) {
+            printBench(url.substring(6));
         } else {
             printConnect();
         }
@@ -456,6 +899,22 @@ public class Main {
                 return;
             }
         }
+        if (host.contains(",") || host.contains("/")) {
+            try {
+                output.setQuiet(false);
+                Sweep sweep = new Sweep();
+                sweep.ping(Sweep.hosts(host), timeout);
+                sweep.report(System.out, "OK");
+            } catch (UnknownHostException ex) {
+                exception("Host: %s%n", ex);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                exception("Ping: %s%n", ex);
+            } finally {
+                output.setQuiet(quiet);
+            }
+            return;
+        }
         
         InetAddress inet;
         try {
@@ -466,7 +925,12 @@ public class Main {
         }
         try {
             output.setQuiet(false);
+            long start = System.nanoTime();
             boolean reachable = inet.isReachable(timeout);
+            if (metrics != null) {
+                metrics.time("ping", "InetAddress.isReachable", System.nanoTime() - start, "host", host);
+                metrics.set("ping_reachable", "1 if the host was reachable", reachable ? 1 : 0, "host", host);
+            }
             System.out.printf("%s (%s): %s%n", inet, host, reachable ? "OK" : "unreachable");
         } catch (IOException ex) {
             exception("%s (%s): %s%n", inet, host, ex);
@@ -486,6 +950,10 @@ public class Main {
         if (host.isEmpty()) {
             host = "localhost";
         }
+        if (host.contains(",") || host.contains("/") || tokens[1].contains(",") || tokens[1].contains("-")) {
+            sweepTCP(host, tokens[1], tokens.length >= 3 ? tokens[2] : null);
+            return;
+        }
         int port;
         try {
             port = Integer.parseInt(tokens[1]);
@@ -506,7 +974,16 @@ public class Main {
         try {
             output.setQuiet(false);
             Socket socket = new Socket();
-            socket.connect(new InetSocketAddress(host, port), timeout);
+            long start = System.nanoTime();
+            try {
+                socket.connect(new InetSocketAddress(host, port), timeout);
+            } finally {
+                if (metrics != null) {
+                    metrics.time("tcp_connect", "TCP connect", System.nanoTime() - start, "host", host, "port", Integer.toString(port));
+                    metrics.set("tcp_connected", "1 if the TCP connect succeeded", socket.isConnected() ? 1 : 0,
+                            "host", host, "port", Integer.toString(port));
+                }
+            }
             socket.setSoTimeout(timeout);
             System.out.printf("Connected: %s%n", socket.getRemoteSocketAddress());
             System.out.printf("Local: %s%n", socket.getLocalSocketAddress());
@@ -527,24 +1004,193 @@ public class Main {
         }
     }
 
+    private void printTCPBenchmark(String address) {
+        printHeader("TCP BENCHMARK", address);
+        String[] tokens = address.split(":", 5);
+        if (tokens.length < 2) {
+            System.out.printf("Address: missing port%n");
+            return;
+        }
+        int port;
+        int connects = 10;
+        int roundTrips = 0;
+        int megabytes = 0;
+        try {
+            port = Integer.parseInt(tokens[1]);
+            if (tokens.length > 2) {
+                connects = Integer.parseInt(tokens[2]);
+            }
+            if (tokens.length > 3) {
+                roundTrips = Integer.parseInt(tokens[3]);
+            }
+            if (tokens.length > 4) {
+                megabytes = Integer.parseInt(tokens[4]);
+            }
+        } catch (NumberFormatException ex) {
+            exception("Arguments: %s%n", ex);
+            return;
+        }
+        EchoServer local = null;
+        try {
+            output.setQuiet(false);
+            String host = tokens[0];
+            if (host.isEmpty()) {
+                local = new EchoServer(port, true);
+                local.start();
+                port = local.port();
+                System.out.printf("Local echo server on port %d%n", port);
+            }
+            InetSocketAddress target = local != null ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port)
+                    : new InetSocketAddress(host, port);
+            TcpProbe probe = new TcpProbe(target, 1000);
+            try {
+                probe.run(connects, roundTrips);
+                if (megabytes > 0) {
+                    probe.bulk((long) megabytes << 20);
+                }
+            } finally {
+                probe.report(System.out);
+            }
+        } catch (IOException ex) {
+            exception("Tcp: %s%n", ex);
+        } finally {
+            if (local != null) {
+                local.shutdown();
+            }
+            output.setQuiet(quiet);
+        }
+    }
+
+    private void printEcho(String address) {
+        printHeader("ECHO", address);
+        String[] tokens = address.split(":", 2);
+        int port;
+        int seconds = 0;
+        try {
+            port = Integer.parseInt(tokens[0]);
+            if (tokens.length > 1) {
+                seconds = Integer.parseInt(tokens[1]);
+            }
+        } catch (NumberFormatException ex) {
+            exception("Arguments: %s%n", ex);
+            return;
+        }
+        try {
+            output.setQuiet(false);
+            EchoServer server = new EchoServer(port, false);
+            server.start();
+            System.out.printf("Listening on port %d%s%n", server.port(), seconds > 0 ? " for " + seconds + " s" : "");
+            System.out.flush();
+            server.join(seconds * 1000L);
+            server.shutdown();
+        } catch (IOException ex) {
+            exception("Echo: %s%n", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            output.setQuiet(quiet);
+        }
+    }
+
+    private void printBench(String baseline) {
+        boolean save = baseline.startsWith("save:");
+        File file = baseline.isEmpty() ? null : new File(save ? baseline.substring(5) : baseline);
+        printHeader("BENCHMARK", file == null ? null : file.getPath());
+        MicroBench bench = new MicroBench();
+        try {
+            output.setQuiet(false);
+            bench.run();
+            boolean compared = !save && file != null && bench.compare(file);
+            bench.report(System.out);
+            if (compared) {
+                int regressions = bench.regressions();
+                System.out.printf("%d regression(s) over %.0f%% of the baseline%n", regressions, MicroBench.TOLERANCE * 100);
+                failed = regressions > 0;
+            } else if (file != null) {
+                bench.save(file);
+                System.out.printf("baseline written to %s%n", file.getPath());
+            }
+        } catch (Exception ex) {
+            exception("Benchmark: %s%n", ex);
+            failed = true;
+        } finally {
+            output.setQuiet(quiet);
+        }
+    }
+
+    private void sweepTCP(String hosts, String ports, String timeoutText) {
+        int timeout = 1000;
+        try {
+            if (timeoutText != null) {
+                timeout = Integer.parseInt(timeoutText);
+            }
+        } catch (NumberFormatException ex) {
+            exception("Timeout: %s%n", ex);
+            return;
+        }
+        try {
+            output.setQuiet(false);
+            Sweep sweep = new Sweep();
+            sweep.tcp(Sweep.hosts(hosts), Sweep.ports(ports), timeout);
+            sweep.report(System.out, "open");
+        } catch (NumberFormatException ex) {
+            exception("Port: %s%n", ex);
+        } catch (UnknownHostException ex) {
+            exception("Host: %s%n", ex);
+        } catch (IOException ex) {
+            exception("Tcp: %s%n", ex);
+        } finally {
+            output.setQuiet(quiet);
+        }
+    }
+
     private void printConnect() {
         printHeader("CONNECT", url + " " + user);
         try {
-            Driver driver = DriverManager.getDriver(url);
+            Driver driver = findDriver();
             String clazz = driver.getClass().getName();
             System.out.printf("Driver class: %s%n", clazz);
         } catch (SQLException ex) {
             exception("Driver class: %s%n", ex);
         }
+        if (watchSeconds > 0) {
+            watch();
+            return;
+        }
+        if (connectCount > 0) {
+            ConnectResult unpooled = benchmarkConnect(connectionFactory(), null);
+            if (poolIdle >= 0) {
+                ConnectionPool pool = newPool();
+                try {
+                    ConnectResult pooled = benchmarkConnect(pool, pool);
+                    printComparison("CONNECT", unpooled.total, unpooled.rate, pooled.total, pooled.rate);
+                } finally {
+                    pool.close();
+                }
+            }
+        }
+        if (loadSessions > 0) {
+            LoadGenerator unpooled = runLoad(connectionFactory(), null);
+            if (poolIdle >= 0 && unpooled != null) {
+                ConnectionPool pool = newPool();
+                try {
+                    LoadGenerator pooled = runLoad(pool, pool);
+                    if (pooled != null) {
+                        printComparison("LOAD", unpooled.total(), unpooled.throughput(), pooled.total(), pooled.throughput());
+                    }
+                } finally {
+                    pool.close();
+                }
+            }
+        }
         try {
-            Connection conn;
-            if (user == null || user.equals("-")) {
-                conn = DriverManager.getConnection(url);
-            } else {
-                conn = DriverManager.getConnection(url, user, pwd);
+            long connectStart = System.nanoTime();
+            Connection conn = openConnection();
+            if (metrics != null) {
+                metrics.time("connect", "Opening the connection", System.nanoTime() - connectStart);
             }
             try {
-                DatabaseMetaData metaData = conn.getMetaData();
+                DatabaseMetaData metaData = Trace.metaData(conn.getMetaData(), url, metrics);
                 try {
                     String name = metaData.getDatabaseProductName();
                     System.out.printf("Product: %s%n", name);
@@ -637,14 +1283,42 @@ public class Main {
                 } catch (SQLException ex) {
                     exception("Procedure Term: %s%n", ex);
                 }
-                if (tables) {
-                    listTables(metaData);
+                if (tables || !columns.isEmpty() || insertTable != null) {
+                    SchemaSnapshot schemaSnapshot = snapshot ? new SchemaSnapshot(url, user) : null;
+                    long start = System.nanoTime();
+                    TableIndex index = readTables(conn, schemaSnapshot);
+                    long read = System.nanoTime() - start;
+                    if (tables) {
+                        listTables(index);
+                    }
+                    if (!columns.isEmpty()) {
+                        listColumns(metaData, index);
+                    }
+                    if (schemaSnapshot != null) {
+                        saveSnapshot(schemaSnapshot, index, read);
+                    }
+                    if (insertTable != null) {
+                        bulkInsert(metaData, index);
+                    }
                 }
-                for (String table : columns) {
-                    listColumns(metaData, table);
+                if (script != null) {
+                    runScript(conn);
                 }
                 if (sql != null) {
-                    executeSQL(conn);
+                    if (sweepRuns > 0) {
+                        sweepFetchSize(conn);
+                    }
+                    if (sqlRepeat > 0) {
+                        benchmarkSQL(conn);
+                    } else if (preparedCount > 0) {
+                        benchmarkPrepared(conn);
+                    } else if (!explain && loadSessions == 0 && sweepRuns == 0) {
+                        // explain runs the statement itself, inside a transaction that is rolled back
+                        executeSQL(conn);
+                    }
+                    if (explain) {
+                        explainSQL(conn, metaData);
+                    }
                 }
             } catch (SQLException ex) {
                 exception("MetaData: %s%n", ex);
@@ -656,100 +1330,500 @@ public class Main {
         }
     }
 
-    private void listTables(DatabaseMetaData metaData) {
+    private Driver findDriver() throws SQLException {
+        Driver driver = targetDriver;
+        if (driver != null && driver.acceptsURL(url))
+            return driver;
+        return DriverManager.getDriver(url);
+    }
+
+    // the driver matching drivers.ini is used directly, DriverManager (which initializes every service driver)
+    // only if it does not accept the URL
+    private Connection openConnection() throws SQLException {
+        Trace.ConnectEvent event = new Trace.ConnectEvent();
+        event.begin();
+        try {
+            Connection conn = connect();
+            event.success = true;
+            return conn;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.url = url;
+                event.user = user;
+                event.commit();
+            }
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        Driver driver = targetDriver;
+        if (driver != null) {
+            Properties info = new Properties();
+            if (user != null && !user.equals("-")) {
+                info.setProperty("user", user);
+                info.setProperty("password", pwd);
+            }
+            Connection conn = driver.connect(url, info);
+            if (conn != null)
+                return conn;
+        }
+        if (user == null || user.equals("-")) {
+            return DriverManager.getConnection(url);
+        } else {
+            return DriverManager.getConnection(url, user, pwd);
+        }
+    }
+
+    private ConnectionFactory connectionFactory() {
+        return new ConnectionFactory() {
+            @Override
+            public Connection open() throws SQLException {
+                return openConnection();
+            }
+            @Override
+            public void release(Connection conn) throws SQLException {
+                conn.close();
+            }
+        };
+    }
+
+    private void watch() {
+        printHeader("WATCH", "every " + watchSeconds + " s" + (watchMinutes > 0 ? " for " + watchMinutes + " min" : "")
+                + (watchReuse ? ", reusing the connection" : "") + (sql == null ? ", connect only" : "  " + sql));
+        Watcher watcher = new Watcher(connectionFactory(), sql, fetchSize, watchSeconds, watchReuse);
+        // Ctrl-C interrupts the watch and waits for the final windows to be printed and the report written
+        final Thread watching = Thread.currentThread();
+        final boolean[] stopping = new boolean[1];
+        final CountDownLatch reported = new CountDownLatch(1);
+        Thread hook = new Thread("DBTester watch shutdown") {
+            @Override
+            public void run() {
+                stopping[0] = true;
+                watching.interrupt();
+                try {
+                    reported.await(SHUTDOWN_WAIT, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    // exiting anyway
+                }
+            }
+        };
+        Runtime.getRuntime().addShutdownHook(hook);
+        try {
+            output.setQuiet(false);
+            if (httpPort >= 0) {
+                int port = watcher.serve(httpPort);
+                System.out.printf("Serving http://localhost:%d/metrics%n", port);
+            }
+            try {
+                watcher.run(TimeUnit.MINUTES.toNanos(watchMinutes), System.out);
+            } catch (InterruptedException ex) {
+                if (!stopping[0]) {
+                    Thread.currentThread().interrupt();
+                    exception("Watch: %s%n", ex);
+                }
+                System.out.printf("%tT watch stopped%n", System.currentTimeMillis());
+            }
+            watcher.report(System.out);
+            if (metrics != null) {
+                watcher.record(metrics);
+                if (stopping[0]) {
+                    // the JVM halts after the hook, main does not get to its own write
+                    try {
+                        metrics.write(new File(report));
+                    } catch (IOException ex) {
+                        exception("Report: %s%n", ex);
+                    }
+                    metrics = null;
+                }
+            }
+        } catch (IOException ex) {
+            exception("Watch: %s%n", ex);
+        } finally {
+            output.setQuiet(quiet);
+            if (stopping[0]) {
+                output.flush();
+            } else {
+                try {
+                    Runtime.getRuntime().removeShutdownHook(hook);
+                } catch (IllegalStateException ex) {
+                    // already shutting down
+                }
+            }
+            reported.countDown();
+        }
+    }
+
+    private ConnectionPool newPool() {
+        int maxIdle = poolIdle > 0 ? poolIdle : Math.max(loadSessions, 8);
+        return new ConnectionPool(connectionFactory(), maxIdle);
+    }
+
+    private void printComparison(String header, Histogram unpooled, double unpooledRate, Histogram pooled, double pooledRate) {
+        printHeader(header + " POOL COMPARISON", null);
+        try {
+            output.setQuiet(false);
+            Histogram.printHeader(System.out);
+            unpooled.print(System.out, "without pool");
+            pooled.print(System.out, "with pool");
+            System.out.printf("Throughput: %.1f/s without pool, %.1f/s with pool%n", unpooledRate, pooledRate);
+        } finally {
+            output.setQuiet(quiet);
+        }
+    }
+
+    private LoadGenerator runLoad(ConnectionFactory factory, ConnectionPool pool) {
+        printHeader("LOAD", loadSessions + " sessions, " + loadSeconds + " s" + (pool == null ? "" : ", pooled")
+                + (sql == null ? ", connect only" : "  " + sql));
+        LoadGenerator load = new LoadGenerator(factory, sql, fetchSize, loadSessions, loadSeconds, loadRate, poolIdle >= 0);
+        try {
+            output.setQuiet(false);
+            load.run();
+            load.report(System.out);
+            if (metrics != null) {
+                metrics.histogram("load", "load: operations", load.total(), "pooled", Boolean.toString(pool != null));
+            }
+            if (pool != null) {
+                pool.report(System.out);
+            }
+            return load;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            exception("Load: %s%n", ex);
+            return null;
+        } finally {
+            output.setQuiet(quiet);
+        }
+    }
+
+    private ConnectResult benchmarkConnect(ConnectionFactory factory, ConnectionPool pool) {
+        printHeader("CONNECT BENCHMARK", connectCount + " (warmup " + connectWarmup + ")" + (pool == null ? "" : ", pooled"));
+        Histogram lookup = new Histogram();
+        Histogram login = new Histogram();
+        Histogram meta = new Histogram();
+        Histogram close = new Histogram();
+        Histogram total = new Histogram();
+        double rate = 0;
+        long start = System.nanoTime();
+        try {
+            output.setQuiet(false);
+            for (int i = -connectWarmup; i < connectCount; i++) {
+                long t0 = System.nanoTime();
+                findDriver();
+                long t1 = System.nanoTime();
+                Connection conn = factory.open();
+                long t2;
+                long t3;
+                try {
+                    t2 = System.nanoTime();
+                    conn.getMetaData();
+                    t3 = System.nanoTime();
+                } finally {
+                    factory.release(conn);
+                }
+                long t4 = System.nanoTime();
+                if (i < 0) {
+                    start = t4;
+                    continue;
+                }
+                lookup.record(t1 - t0);
+                login.record(t2 - t1);
+                meta.record(t3 - t2);
+                close.record(t4 - t3);
+                total.record(t4 - t0);
+            }
+        } catch (SQLException ex) {
+            exception("Connect %d: %s%n", total.count() + 1, ex);
+        } finally {
+            try {
+                long elapsed = System.nanoTime() - start;
+                Histogram.printHeader(System.out);
+                lookup.print(System.out, "driver lookup");
+                login.print(System.out, pool == null ? "login" : "borrow");
+                meta.print(System.out, "first metadata");
+                close.print(System.out, pool == null ? "close" : "release");
+                total.print(System.out, "total");
+                if (metrics != null) {
+                    metrics.histogram("connect_benchmark", "connect: open and close", total, "pooled", Boolean.toString(pool != null));
+                }
+                // also the throughput of the pool comparison
+                rate = elapsed > 0 ? total.count() * 1e9 / elapsed : 0;
+                if (total.count() > 0) {
+                    System.out.printf("%d connections in %.3f s: %.1f connections/s%n",
+                            total.count(), elapsed / 1e9, rate);
+                }
+                if (pool != null) {
+                    pool.report(System.out);
+                }
+            } finally {
+                output.setQuiet(quiet);
+            }
+        }
+        return new ConnectResult(total, rate);
+    }
+
+    private TableIndex readTables(Connection conn, SchemaSnapshot schemaSnapshot) {
+        try {
+            if (schemaSnapshot != null)
+                return schemaSnapshot.load(conn, snapshotRefresh);
+            return TableIndex.read(conn.getMetaData());
+        } catch (SQLException ex) {
+            exception("Tables: %s%n", ex);
+            return new TableIndex();
+        }
+    }
+
+    private void saveSnapshot(SchemaSnapshot schemaSnapshot, TableIndex index, long read) {
+        printHeader("SNAPSHOT", schemaSnapshot.file().getPath());
+        System.out.printf("%s, tables read in %.3f ms%n", schemaSnapshot.status(), read / 1e6);
+        try {
+            schemaSnapshot.save(index);
+        } catch (IOException ex) {
+            exception("Snapshot: %s%n", ex);
+        }
+    }
+
+    private void listTables(TableIndex index) {
         printHeader("TABLES", null);
         try {
             output.setQuiet(false);
-            ResultSet rset = metaData.getTables(null, null, "%", null);
             boolean first = true;
-            while (rset.next()) {
+            for (TableIndex.Table table : index.tables()) {
                 if (first) {
                     System.out.printf(TABLE_FORMAT, "CATALOG", "SCHEMA", "NAME", "TYPE");
                 }
                 first = false;
-                System.out.printf(TABLE_FORMAT, 
-                        rset.getString("TABLE_CAT"), 
-                        rset.getString("TABLE_SCHEM"), 
-                        rset.getString("TABLE_NAME"), 
-                        rset.getString("TABLE_TYPE"));
+                System.out.printf(TABLE_FORMAT, table.catalog, table.schema, table.name, table.type);
             }
             if (first) {
                 System.out.printf("NO TABLE FOUND%n");
             }
-        } catch (SQLException ex) {
-            exception("Tables: %s%n", ex);
         } finally {
             output.setQuiet(quiet);
         }
     }
 
-    private void listColumns(DatabaseMetaData metaData, String table) {
-        printHeader("COLUMNS ", table);
+    private void listColumns(DatabaseMetaData metaData, TableIndex index) {
+        List<TableIndex.Table> wanted = new ArrayList<TableIndex.Table>();
+        for (String table : columns) {
+            wanted.addAll(index.find(table));
+        }
+        Map<TableIndex.Table, List<TableIndex.Column>> found;
         try {
-            output.setQuiet(false);
-            ResultSet tab = metaData.getTables(null, null, "%", null);
-            boolean firstTable = true;
-            while (tab.next()) {
-                String name = tab.getString("TABLE_NAME");
-                if (name.equalsIgnoreCase(table)) {
+            found = index.columns(metaData, wanted);
+        } catch (SQLException ex) {
+            exception("Columns: %s%n", ex);
+            return;
+        }
+        for (String table : columns) {
+            printHeader("COLUMNS ", table);
+            try {
+                output.setQuiet(false);
+                boolean firstTable = true;
+                for (TableIndex.Table tab : index.find(table)) {
                     if (!firstTable) {
                         System.out.println(SUBSEPARATOR);
                     }
                     firstTable = false;
-                    String catalog = tab.getString("TABLE_CAT");
-                    String schema = tab.getString("TABLE_SCHEM");
-                    System.out.printf("Table: %s, Catalog: %s, Schema: %s%n", name, catalog, schema);
-                    ResultSet rset = metaData.getColumns(catalog, schema, name, "%");
+                    System.out.printf("Table: %s, Catalog: %s, Schema: %s%n", tab.name, tab.catalog, tab.schema);
                     boolean first = true;
-                    while (rset.next()) {
+                    for (TableIndex.Column column : found.get(tab)) {
                         if (first) {
                             System.out.printf(COLUMN_FORMAT, "NAME", "TYPE", "SIZE", "DEFAULT");
                         }
                         first = false;
                         String sizeText;
-                        int size = rset.getInt("COLUMN_SIZE");
-                        if (rset.wasNull()) {
+                        if (column.size == null) {
                             sizeText = "";
                         } else {
-                            sizeText = Integer.toString(size);
-                            int decimal = rset.getInt("DECIMAL_DIGITS");
-                            if (!rset.wasNull()) {
-                                sizeText += "." + Integer.toString(decimal);
+                            sizeText = Integer.toString(column.size);
+                            if (column.decimals != null) {
+                                sizeText += "." + Integer.toString(column.decimals);
                             }
                         }
-                        System.out.printf(COLUMN_FORMAT,
-                                rset.getString("COLUMN_NAME"),
-                                rset.getString("TYPE_NAME"),
-                                sizeText,
-                                rset.getString("COLUMN_DEF"));
+                        System.out.printf(COLUMN_FORMAT, column.name, column.typeName, sizeText, column.defaultValue);
                     }
                 }
+                if (firstTable) {
+                    System.out.printf("NO TABLE FOUND%n");
+                }
+            } finally {
+                output.setQuiet(quiet);
             }
-            if (firstTable) {
-                System.out.printf("NO TABLE FOUND%n");
+        }
+    }
+
+    private void runScript(Connection conn) {
+        printHeader("SCRIPT", script);
+        ScriptRunner runner = new ScriptRunner(conn, batchSize, commitInterval, delimiter);
+        try {
+            Reader reader = new InputStreamReader(new FileInputStream(script), StandardCharsets.UTF_8);
+            try {
+                runner.run(reader);
+            } finally {
+                reader.close();
             }
+        } catch (IOException ex) {
+            exception("Script: %s%n", ex);
         } catch (SQLException ex) {
-            exception("Columns: %s%n", ex);
+            exception("Script: %s%n", ex);
         } finally {
-            output.setQuiet(quiet);
+            try {
+                output.setQuiet(false);
+                runner.report(System.out);
+            } finally {
+                output.setQuiet(quiet);
+            }
+        }
+    }
+
+    private void bulkInsert(DatabaseMetaData metaData, TableIndex index) {
+        printHeader("INSERT", insertTable);
+        List<TableIndex.Table> found = index.find(insertTable);
+        if (found.isEmpty()) {
+            exception("Insert: table not found: %s%n", insertTable);
+            return;
+        }
+        TableIndex.Table table = found.get(0);
+        BulkInserter inserter;
+        try {
+            List<TableIndex.Column> tableColumns = index.columns(metaData, found.subList(0, 1)).get(table);
+            if (tableColumns == null || tableColumns.isEmpty()) {
+                exception("Insert: no columns found: %s%n", insertTable);
+                return;
+            }
+            inserter = new BulkInserter(connectionFactory(), metaData, table, tableColumns,
+                    insertRows, insertThreads, insertTruncate);
+        } catch (SQLException ex) {
+            exception("Insert: %s%n", ex);
+            return;
+        }
+        System.out.printf("%s%n", inserter.insert());
+        try {
+            inserter.run();
+        } catch (SQLException ex) {
+            exception("Insert: %s%n", ex);
+        } catch (InterruptedException ex) {
+            exception("Insert: %s%n", ex);
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                output.setQuiet(false);
+                inserter.report(System.out);
+            } finally {
+                output.setQuiet(quiet);
+            }
         }
     }
 
+    // handles of the per result metrics, so listing and exporting only update counters
+    private void createTimers() {
+        executeTimer = metrics.timer("execute", "Statement.execute");
+        firstRowTimer = metrics.timer("first_row", "From execute to the first row");
+        fetchTimer = metrics.timer("fetch", "Fetching and listing the rows");
+        exportTimer = metrics.timer("export", "Exporting a result set");
+        rowsCounter = metrics.counter("rows", "Rows fetched");
+        fetchedBytes = metrics.counter("fetched_bytes", "Approximate payload bytes fetched");
+        exportedBytes = metrics.counter("exported_bytes", "Bytes written by export:");
+        phaseTimers = new QueryPhases.Timers(metrics);
+    }
+
     private void executeSQL(Connection conn) {
         printHeader("SQL", sql);
+        ResultExporter exporter = null;
+        if (export != null) {
+            try {
+                exporter = new ResultExporter(new File(export));
+            } catch (IOException ex) {
+                exception("Export: %s%n", ex);
+                return;
+            }
+        }
+        boolean restoreAutoCommit = false;
         try {
-            Statement stmt = conn.createStatement();
+            int fetch = fetchSize;
+            if (exporter != null) {
+                // without a cursor the driver holds the whole result before the first row is exported: PostgreSQL
+                // only streams with auto-commit off and a positive fetch size, MySQL row by row with Integer.MIN_VALUE
+                String product;
+                try {
+                    product = conn.getMetaData().getDatabaseProductName();
+                } catch (SQLException ex) {
+                    exception("Product: %s%n", ex);
+                    product = null;
+                }
+                switch (PlanExplainer.vendor(product)) {
+                    case POSTGRESQL:
+                        if (conn.getAutoCommit()) {
+                            conn.setAutoCommit(false);
+                            restoreAutoCommit = true;
+                        }
+                        // fall through
+                    case MARIADB:
+                        if (fetch <= 0) {
+                            fetch = EXPORT_FETCH;
+                        }
+                        break;
+                    case MYSQL:
+                        if (fetch <= 0) {
+                            fetch = Integer.MIN_VALUE;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                if (fetch != fetchSize || restoreAutoCommit) {
+                    System.out.printf("streaming export: fetch size %d%s%n", fetch, restoreAutoCommit ? ", auto-commit off" : "");
+                }
+            }
+            Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
             try {
+                if (fetch != 0) {
+                    stmt.setFetchSize(fetch);
+                }
+                int sqlHash = sql.hashCode();
+                Trace.ExecuteEvent execute = new Trace.ExecuteEvent();
+                execute.begin();
+                long start = System.nanoTime();
                 boolean isResultSet = stmt.execute(sql);
                 int count = stmt.getUpdateCount();
+                execute.end();
+                long executeTime = System.nanoTime() - start;
+                if (metrics != null) {
+                    executeTimer.time(executeTime);
+                }
+                if (execute.shouldCommit()) {
+                    execute.url = url;
+                    execute.sqlHash = sqlHash;
+                    execute.sql = Trace.sql(sql);
+                    execute.resultSet = isResultSet;
+                    execute.updateCount = count;
+                    execute.commit();
+                }
                 do {
                     if (isResultSet) {
-                        listResultSet(stmt.getResultSet());
+                        if (exporter != null) {
+                            exportResultSet(exporter, stmt.getResultSet());
+                        } else {
+                            listResultSet(stmt.getResultSet(), sqlHash, start, executeTime);
+                            start = 0;
+                        }
                     } else {
                         System.out.printf("count: %d%n", count);
                     }
+                    Trace.MoreResultsEvent more = new Trace.MoreResultsEvent();
+                    more.begin();
+                    long moreStart = System.nanoTime();
                     isResultSet = stmt.getMoreResults();
                     count = stmt.getUpdateCount();
+                    executeTime = System.nanoTime() - moreStart;
+                    more.end();
+                    if (more.shouldCommit()) {
+                        more.sqlHash = sqlHash;
+                        more.resultSet = isResultSet;
+                        more.updateCount = count;
+                        more.commit();
+                    }
                     if (isResultSet || count != -1) {
                         System.out.printf("%s%n", SUBSEPARATOR);
                     }
@@ -761,98 +1835,433 @@ public class Main {
             }
         } catch (SQLException ex) {
             exception("Create: %s%n", ex);
+        } finally {
+            if (restoreAutoCommit) {
+                try {
+                    // commits the transaction opened for the cursor
+                    conn.setAutoCommit(true);
+                } catch (SQLException ex) {
+                    exception("AutoCommit: %s%n", ex);
+                }
+            }
+            if (exporter != null) {
+                try {
+                    exporter.close();
+                } catch (IOException ex) {
+                    exception("Export: %s%n", ex);
+                }
+            }
+        }
+    }
+
+    private void benchmarkPrepared(Connection conn) {
+        printHeader("PREPARED BENCHMARK", preparedCount + " (warmup " + preparedWarmup + ")  " + sql);
+        int parameters = PreparedBench.parameters(sql);
+        if (parameters == 0) {
+            System.out.printf("no ? parameter markers in sql:, every mode runs the same statement%n");
+        }
+        PreparedBench bench;
+        try {
+            List<String[]> rows = values == null ? null : PreparedBench.readValues(new File(values), parameters);
+            bench = new PreparedBench(conn, sql, preparedCount, preparedWarmup, fetchSize, rows);
+        } catch (IOException ex) {
+            exception("Values: %s%n", ex);
+            return;
+        }
+        if (bench.repeatsValues()) {
+            exception("Values: %s has fewer rows than the %d executions per mode, rows would repeat%n",
+                    values, preparedWarmup + preparedCount);
+            return;
+        }
+        try {
+            bench.run();
+        } catch (SQLException ex) {
+            exception("Prepared: %s%n", ex);
+        } finally {
+            try {
+                output.setQuiet(false);
+                bench.report(System.out);
+            } finally {
+                output.setQuiet(quiet);
+            }
+            if (metrics != null) {
+                bench.record(metrics);
+            }
+        }
+    }
+
+    private void explainSQL(Connection conn, DatabaseMetaData metaData) {
+        String product;
+        try {
+            product = metaData.getDatabaseProductName();
+        } catch (SQLException ex) {
+            exception("Product: %s%n", ex);
+            product = null;
+        }
+        PlanExplainer explainer = new PlanExplainer(conn, product, sql, fetchSize);
+        printHeader("EXPLAIN", product + "  " + sql);
+        try {
+            output.setQuiet(false);
+            explainer.run(System.out);
+            System.out.println(SUBSEPARATOR);
+            explainer.report(System.out);
+        } catch (SQLException ex) {
+            exception("Explain: %s%n", ex);
+        } finally {
+            output.setQuiet(quiet);
+        }
+    }
+
+    private static void commitFetch(Trace.FetchEvent fetch, int sqlHash, int batchRows, long rows) {
+        fetch.end();
+        if (fetch.shouldCommit()) {
+            fetch.sqlHash = sqlHash;
+            fetch.rows = batchRows;
+            fetch.totalRows = rows;
+            fetch.commit();
+        }
+    }
+
+    private void exportResultSet(ResultExporter exporter, ResultSet rset) throws SQLException {
+        long rows = exporter.rows();
+        long bytes = exporter.bytes();
+        long start = System.nanoTime();
+        try {
+            exporter.export(rset);
+        } catch (IOException ex) {
+            exception("Export: %s%n", ex);
+        } finally {
+            rset.close();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        rows = exporter.rows() - rows;
+        bytes = exporter.bytes() - bytes;
+        if (metrics != null) {
+            exportTimer.time(System.nanoTime() - start);
+            rowsCounter.add(rows);
+            exportedBytes.add(bytes);
+        }
+        try {
+            output.setQuiet(false);
+            System.out.printf("%s %s: %d rows, %d bytes in %.3f s, %.1f rows/s, %.2f MB/s%n", exporter.format(), exporter.file(),
+                    rows, bytes, seconds, rows / seconds, bytes / seconds / (1 << 20));
+        } finally {
+            output.setQuiet(quiet);
         }
     }
     
-    private void listResultSet(ResultSet rset) {
+    // <executed> is the nanoTime before execute for the first result set, else 0,
+    // <executeTime> the nanoseconds of the execute or getMoreResults call producing this result set
+    private void listResultSet(ResultSet rset, int sqlHash, long executed, long executeTime) {
         String format;
         
         format = "%-12.12s|%-12.12s|%-15.15s|%-15.15s|%-12.12s|%4.4s.%-4.4s|%-10.10s%n";
+        long t0 = System.nanoTime();
         System.out.printf(format, "Catalog", "Schema", "Table", "Name", "TypeName", "Precision", "Scale","JDBCType");
         System.out.printf(format, SUBSEPARATOR, SUBSEPARATOR, SUBSEPARATOR, SUBSEPARATOR, SUBSEPARATOR, SUBSEPARATOR, SUBSEPARATOR, SUBSEPARATOR);
+        long printed = System.nanoTime() - t0;
         try {
+            t0 = System.nanoTime();
+            long listed = 0;
+            int resultFetchSize;
+            try {
+                resultFetchSize = rset.getFetchSize();
+            } catch (SQLException ex) {
+                resultFetchSize = fetchSize;
+            }
+            QueryPhases phases = new QueryPhases(executeTime, resultFetchSize);
             ResultSetMetaData meta = rset.getMetaData();
             int count = meta.getColumnCount();
             for (int i = 1; i <= count; i++) {
-                System.out.printf(format, 
-                    meta.getCatalogName(i),
-                    meta.getSchemaName(i),
-                    meta.getTableName(i),
-                    meta.getColumnName(i), 
-                    meta.getColumnTypeName(i), 
-                    meta.getPrecision(i), 
-                    meta.getScale(i),
-                    typeToString(meta.getColumnType(i)));
+                String catalog = meta.getCatalogName(i);
+                String schema = meta.getSchemaName(i);
+                String table = meta.getTableName(i);
+                String name = meta.getColumnName(i);
+                String typeName = meta.getColumnTypeName(i);
+                int precision = meta.getPrecision(i);
+                int scale = meta.getScale(i);
+                String type = typeToString(meta.getColumnType(i));
+                long t1 = System.nanoTime();
+                System.out.printf(format, catalog, schema, table, name, typeName, precision, scale, type);
+                listed += System.nanoTime() - t1;
             }
-            
-            System.out.println(SUBSEPARATOR);
             Object[] labels = new String[count];
-            int[] sizes = new int[count];
-            int total = -1;
             for (int i = 0; i < count; i++) {
                 labels[i] = meta.getColumnLabel(i+1);
-                sizes[i] = meta.getColumnDisplaySize(i+1);
-                total += sizes[i] + 1;
-            }
-            int max = width > 0 ? width : 100;
-            if (total > max) {
-                int mean = 2 * ((max+count-1) / count);
-                if (mean > 15) {
-                    while (total > max) {
-                        boolean changed = false;
-                        for (int i = count-1; i >= 0; i--) {
-                            if (sizes[i] > mean) {
-                                changed = true;
-                                total -= 1;
-                                sizes[i] -= 1;
-                                if (total <= 80)
-                                    break;
-                            }
-                        }
-                        if (!changed) {
-                            mean = (int) (mean * 0.7);
-                            if (mean < 7)
+            }
+            int[] sizes = columnSizes(meta);
+            ColumnReader[] readers = ColumnReader.create(meta);
+            long t1 = System.nanoTime();
+            phases.metadata(t1 - t0 - listed);
+            
+            System.out.println(SUBSEPARATOR);
+            RowRenderer renderer = new RowRenderer(System.out, sizes, '|');
+            renderer.row(labels);
+            renderer.begin();
+            for (int i = 0; i < count; i++) {
+                renderer.column(SUBSEPARATOR);
+            }
+            renderer.end();
+            phases.render(printed + listed + System.nanoTime() - t1);
+            long rows = 0;
+            long allocated = allocatedBytes();
+            // a fetch event for each fetch size (or FETCH_BATCH) rows, roughly one per round trip
+            int batch = fetchSize > 0 ? fetchSize : FETCH_BATCH;
+            int batchRows = 0;
+            long bytes = 0;
+            long fetched = System.nanoTime();
+            Trace.FetchEvent fetch = new Trace.FetchEvent();
+            fetch.begin();
+            try {
+                output.setQuiet(false);
+                // columns are read first and then rendered, to tell the driver's decoding from our output
+                long t2 = System.nanoTime();
+                while (rset.next()) {
+                    long t3 = System.nanoTime();
+                    phases.next(t3 - t2);
+                    if (rows == 0 && executed != 0 && metrics != null) {
+                        firstRowTimer.time(t3 - executed);
+                    }
+                    for (ColumnReader reader : readers) {
+                        reader.read(rset);
+                        bytes += reader.size();
+                    }
+                    long t4 = System.nanoTime();
+                    phases.read(t4 - t3);
+                    renderer.begin();
+                    for (ColumnReader reader : readers) {
+                        reader.render(renderer);
+                    }
+                    renderer.end();
+                    rows += 1;
+                    if (++batchRows == batch) {
+                        commitFetch(fetch, sqlHash, batchRows, rows);
+                        batchRows = 0;
+                        fetch = new Trace.FetchEvent();
+                        fetch.begin();
+                    }
+                    t2 = System.nanoTime();
+                    phases.render(t2 - t4);
+                }
+                phases.next(System.nanoTime() - t2);
+            } finally {
+                output.setQuiet(quiet);
+                if (batchRows > 0) {
+                    commitFetch(fetch, sqlHash, batchRows, rows);
+                }
+                if (metrics != null) {
+                    fetchTimer.time(System.nanoTime() - fetched);
+                    rowsCounter.add(rows);
+                    fetchedBytes.add(bytes);
+                }
+            }
+            allocated = allocatedBytes() - allocated;
+            System.out.println(SUBSEPARATOR);
+            if (rows > 0 && allocated >= 0) {
+                System.out.printf("%d rows, %s, %d bytes allocated per row%n", rows, readerTypes(meta, readers), allocated / rows);
+            }
+            phases.print(System.out);
+            if (metrics != null) {
+                phases.record(phaseTimers);
+            }
+        } catch (SQLException ex) {
+            exception("RS-Meta: %s%n", ex);
+            return;
+        }
+    }
+
+    private int[] columnSizes(ResultSetMetaData meta) throws SQLException {
+        int count = meta.getColumnCount();
+        int[] sizes = new int[count];
+        int total = -1;
+        for (int i = 0; i < count; i++) {
+            sizes[i] = Math.max(0, meta.getColumnDisplaySize(i+1));
+            total += sizes[i] + 1;
+        }
+        int max = width > 0 ? width : 100;
+        if (total > max) {
+            int mean = 2 * ((max+count-1) / count);
+            if (mean > 15) {
+                while (total > max) {
+                    boolean changed = false;
+                    for (int i = count-1; i >= 0; i--) {
+                        if (sizes[i] > mean) {
+                            changed = true;
+                            total -= 1;
+                            sizes[i] -= 1;
+                            if (total <= 80)
                                 break;
                         }
                     }
-                } else {
-                    for (int i = 0; i < count; i++) {
-                        if (sizes[i] > 20) {
-                            total -= sizes[i] - 20;
-                            sizes[i] = 20;
-                        }
+                    if (!changed) {
+                        mean = (int) (mean * 0.7);
+                        if (mean < 7)
+                            break;
                     }
                 }
-            }
-            StringBuilder builder = new StringBuilder();
-            for (int size : sizes) {
-                if (builder.length() > 0) {
-                    builder.append("|");
+            } else {
+                for (int i = 0; i < count; i++) {
+                    if (sizes[i] > 20) {
+                        total -= sizes[i] - 20;
+                        sizes[i] = 20;
+                    }
                 }
-                builder.append("%-").append(size).append(".").append(size).append("s");
             }
-            builder.append("%n");
-            format = builder.toString();
-            
-            Object[] values = new Object[count];
-            Arrays.fill(values, SUBSEPARATOR);
-            System.out.printf(format, labels);
-            System.out.printf(format, values);
+        }
+        return sizes;
+    }
+
+    private void benchmarkSQL(Connection conn) {
+        printHeader("SQL BENCHMARK", sqlRepeat + " (warmup " + sqlWarmup + (render ? "" : ", no render") + ")  " + sql);
+        Histogram execute = new Histogram();
+        Histogram fetch = new Histogram();
+        Histogram total = new Histogram();
+        // rendered rows are discarded, only the formatting cost is measured
+        PrintStream sink = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        long rows = 0;
+        long bytes = 0;
+        long start = System.nanoTime();
+        try {
+            output.setQuiet(false);
+            Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
             try {
-                output.setQuiet(false);
-                while (rset.next()) {
-                    for (int i = 0; i < count; i++) {
-                        values[i] = rset.getObject(i+1);
+                if (fetchSize > 0) {
+                    stmt.setFetchSize(fetchSize);
+                }
+                for (int run = -sqlWarmup; run < sqlRepeat; run++) {
+                    long runRows = 0;
+                    long runBytes = 0;
+                    Trace.ExecuteEvent event = new Trace.ExecuteEvent();
+                    event.begin();
+                    long t0 = System.nanoTime();
+                    boolean isResultSet = stmt.execute(sql);
+                    long t1 = System.nanoTime();
+                    int count = stmt.getUpdateCount();
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.url = url;
+                        event.sqlHash = sql.hashCode();
+                        event.sql = Trace.sql(sql);
+                        event.resultSet = isResultSet;
+                        event.updateCount = count;
+                        event.commit();
+                    }
+                    while (isResultSet || count != -1) {
+                        if (isResultSet) {
+                            ResultSet rset = stmt.getResultSet();
+                            try {
+                                ResultSetMetaData meta = rset.getMetaData();
+                                ColumnReader[] readers = ColumnReader.create(meta);
+                                RowRenderer renderer = render ? new RowRenderer(sink, columnSizes(meta), '|') : null;
+                                while (rset.next()) {
+                                    if (renderer != null) {
+                                        renderer.begin();
+                                    }
+                                    for (ColumnReader reader : readers) {
+                                        reader.read(rset);
+                                        runBytes += reader.size();
+                                        if (renderer != null) {
+                                            reader.render(renderer);
+                                        }
+                                    }
+                                    if (renderer != null) {
+                                        renderer.end();
+                                    }
+                                    runRows += 1;
+                                }
+                            } finally {
+                                rset.close();
+                            }
+                        }
+                        isResultSet = stmt.getMoreResults();
+                        count = stmt.getUpdateCount();
+                    }
+                    long t2 = System.nanoTime();
+                    if (run < 0) {
+                        start = t2;
+                        continue;
                     }
-                    System.out.printf(format, values);
+                    execute.record(t1 - t0);
+                    fetch.record(t2 - t1);
+                    total.record(t2 - t0);
+                    rows += runRows;
+                    bytes += runBytes;
+                }
+            } catch (SQLException ex) {
+                exception("Execute %d: %s%n", total.count() + 1, ex);
+            } finally {
+                stmt.close();
+            }
+        } catch (SQLException ex) {
+            exception("Create: %s%n", ex);
+        } finally {
+            try {
+                long elapsed = System.nanoTime() - start;
+                Histogram.printHeader(System.out);
+                execute.print(System.out, "execute");
+                fetch.print(System.out, render ? "fetch+render" : "fetch");
+                total.print(System.out, "total");
+                if (metrics != null) {
+                    metrics.histogram("sql_benchmark", "repeat: phases of sql:", execute, "phase", "execute");
+                    metrics.histogram("sql_benchmark", "repeat: phases of sql:", fetch, "phase", "fetch");
+                    metrics.histogram("sql_benchmark", "repeat: phases of sql:", total, "phase", "total");
+                }
+                if (total.count() > 0) {
+                    double seconds = elapsed / 1e9;
+                    System.out.printf("%d runs in %.3f s: %.1f runs/s%n", total.count(), seconds, total.count() / seconds);
+                    System.out.printf("%d rows: %.1f rows/s, %d rows/run%n", rows, rows / seconds, rows / total.count());
+                    System.out.printf("%d bytes: %.1f KB/s (approximate payload)%n", bytes, bytes / seconds / 1024);
                 }
             } finally {
                 output.setQuiet(quiet);
             }
+        }
+    }
+
+    private void sweepFetchSize(Connection conn) {
+        printHeader("FETCH SIZE SWEEP", sweepRuns + " run(s) per size  " + sql);
+        FetchSweep sweep = new FetchSweep(conn, sql, sweepRuns);
+        try {
+            sweep.run();
         } catch (SQLException ex) {
-            exception("RS-Meta: %s%n", ex);
-            return;
+            exception("Fetch sweep: %s%n", ex);
+        } finally {
+            try {
+                output.setQuiet(false);
+                sweep.report(System.out);
+            } finally {
+                output.setQuiet(quiet);
+            }
+        }
+    }
+
+    // bytes allocated by the current thread so far, -1 if the JVM does not tell
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private String readerTypes(ResultSetMetaData meta, ColumnReader[] readers) throws SQLException {
+        StringBuilder primitive = new StringBuilder();
+        for (int i = 0; i < readers.length; i++) {
+            if (readers[i].isPrimitive()) {
+                if (primitive.length() > 0) {
+                    primitive.append(' ');
+                }
+                primitive.append(typeToString(meta.getColumnType(i+1)));
+            }
         }
+        return primitive.length() == 0 ? "no primitive columns" : "primitive: " + primitive;
     }
 
     private String typeToString(int type) {
@@ -872,6 +2281,53 @@ public class Main {
         System.out.println(SUBSEPARATOR);
     }
     
+    // latencies and throughput of one connect: run
+    private static class ConnectResult {
+
+        final Histogram total;
+        final double rate;
+
+        ConnectResult(Histogram total, double rate) {
+            this.total = total;
+            this.rate = rate;
+        }
+    }
+
+    private abstract class Section implements Callable<LogPrinter.Capture> {
+
+        final String name;
+        private final Section after;
+        private final CountDownLatch done = new CountDownLatch(1);
+        volatile long nanos;
+
+        Section(String name, Section after) {
+            this.name = name;
+            this.after = after;
+        }
+
+        abstract void show();
+
+        @Override
+        public LogPrinter.Capture call() throws InterruptedException {
+            try {
+                if (after != null) {
+                    after.done.await();
+                }
+                output.startCapture();
+                long start = System.nanoTime();
+                try {
+                    show();
+                } finally {
+                    nanos = System.nanoTime() - start;
+                }
+                return output.stopCapture();
+            } finally {
+                output.stopCapture();
+                done.countDown();
+            }
+        }
+    }
+
     private void exception(String format, Object... args) {
         try {
             output.setQuiet(false);
@@ -0,0 +1,319 @@
+package cfh.dbtester;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// measurements of a run kept as fixed counters and written once at the end as JSON and OpenMetrics text;
+// hot paths update handles created once at setup (no key, no varargs, one uncontended lock),
+// time/add/set look the metric up by name and labels and are meant for one-off measurements
+class Metrics {
+
+    private static final String PREFIX = "dbtester_";
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private enum Type { GAUGE, COUNTER, TIMER, SUMMARY }
+
+    static class Metric {
+
+        private final String name;
+        private final Type type;
+        private final String help;
+        private final String[] labels;
+        private long count = 0;
+        private double sum = 0;
+        private double min = Double.MAX_VALUE;
+        private double max = 0;
+        private double value = 0;
+        private Histogram histogram = null;
+
+        private Metric(String name, Type type, String help, String[] labels) {
+            this.name = name;
+            this.type = type;
+            this.help = help;
+            this.labels = labels;
+        }
+
+        // duration in nanoseconds, summed up with count, min and max
+        synchronized void time(long nanos) {
+            double seconds = nanos / 1e9;
+            count += 1;
+            sum += seconds;
+            min = Math.min(min, seconds);
+            max = Math.max(max, seconds);
+        }
+
+        synchronized void add(long amount) {
+            count += 1;
+            value += amount;
+        }
+
+        synchronized void set(double value) {
+            count += 1;
+            this.value = value;
+        }
+
+        synchronized void add(Histogram latencies) {
+            if (histogram == null) {
+                histogram = new Histogram();
+            }
+            count += 1;
+            histogram.add(latencies);
+        }
+    }
+
+    private final Map<String, Metric> metrics = new LinkedHashMap<String, Metric>();
+    private final long started = System.currentTimeMillis();
+
+    // handles, only written once updated
+    synchronized Metric timer(String name, String help, String... labels) {
+        return metric(name, Type.TIMER, help, labels);
+    }
+
+    synchronized Metric counter(String name, String help, String... labels) {
+        return metric(name, Type.COUNTER, help, labels);
+    }
+
+    synchronized Metric gauge(String name, String help, String... labels) {
+        return metric(name, Type.GAUGE, help, labels);
+    }
+
+    // duration in nanoseconds, summed up with count, min and max per name and labels
+    void time(String name, String help, long nanos, String... labels) {
+        timer(name, help, labels).time(nanos);
+    }
+
+    void add(String name, String help, long amount, String... labels) {
+        counter(name, help, labels).add(amount);
+    }
+
+    void set(String name, String help, double value, String... labels) {
+        gauge(name, help, labels).set(value);
+    }
+
+    // latencies already collected in a histogram, written as a summary with quantiles
+    void histogram(String name, String help, Histogram histogram, String... labels) {
+        Metric metric;
+        synchronized (this) {
+            metric = metric(name, Type.SUMMARY, help, labels);
+        }
+        metric.add(histogram);
+    }
+
+    synchronized void write(File file) throws IOException {
+        String path = file.getPath();
+        String base = path.endsWith(".json") ? path.substring(0, path.length() - 5) : path;
+        writeJSON(new File(base + ".json"));
+        writeOpenMetrics(new File(base + ".prom"));
+    }
+
+    private Metric metric(String name, Type type, String help, String[] labels) {
+        StringBuilder key = new StringBuilder(name);
+        for (String label : labels) {
+            key.append('\u0000').append(label);
+        }
+        Metric metric = metrics.get(key.toString());
+        if (metric == null) {
+            metric = new Metric(name, type, help, labels);
+            metrics.put(key.toString(), metric);
+        }
+        return metric;
+    }
+
+    private void writeJSON(File file) throws IOException {
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        try {
+            writeJSON(out);
+        } finally {
+            out.close();
+        }
+        if (out.checkError())
+            throw new IOException("error writing " + file);
+    }
+
+    private void writeOpenMetrics(File file) throws IOException {
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        try {
+            writeOpenMetrics(out);
+        } finally {
+            out.close();
+        }
+        if (out.checkError())
+            throw new IOException("error writing " + file);
+    }
+
+    synchronized void writeJSON(PrintWriter out) {
+        out.printf(Locale.ROOT, "{%n  \"started\": %d,%n  \"metrics\": [", started);
+        boolean first = true;
+        for (Metric metric : recorded()) {
+            out.print(first ? "\n" : ",\n");
+            first = false;
+            out.printf(Locale.ROOT, "    {\"name\": %s, \"type\": \"%s\", \"labels\": {",
+                    json(metric.name), metric.type.name().toLowerCase(Locale.ROOT));
+            for (int i = 0; i + 1 < metric.labels.length; i += 2) {
+                out.printf("%s%s: %s", i > 0 ? ", " : "", json(metric.labels[i]), json(metric.labels[i+1]));
+            }
+            out.print("}, ");
+            switch (metric.type) {
+                case TIMER:
+                    out.printf(Locale.ROOT, "\"count\": %d, \"sum_seconds\": %s, \"min_seconds\": %s, \"max_seconds\": %s",
+                            metric.count, number(metric.sum), number(metric.min), number(metric.max));
+                    break;
+                case SUMMARY:
+                    Histogram histogram = metric.histogram;
+                    out.printf(Locale.ROOT, "\"count\": %d, \"sum_seconds\": %s", histogram.count(), number(histogram.sum() / 1e9));
+                    // no latencies (an empty watch: window), no minimum, maximum or quantiles instead of zeros
+                    if (histogram.count() == 0)
+                        break;
+                    out.printf(Locale.ROOT, ", \"min_seconds\": %s, \"max_seconds\": %s",
+                            number(histogram.min() / 1e9), number(histogram.max() / 1e9));
+                    for (double quantile : QUANTILES) {
+                        out.printf(Locale.ROOT, ", \"p%s_seconds\": %s",
+                                number(quantile * 100).replace(".", "_"), number(histogram.percentile(quantile * 100) / 1e9));
+                    }
+                    break;
+                default:
+                    out.printf("\"value\": %s", number(metric.value));
+                    break;
+            }
+            out.print("}");
+        }
+        out.printf("%n  ]%n}%n");
+    }
+
+    synchronized void writeOpenMetrics(PrintWriter out) {
+        // the samples of one metric family must be written together, lines end with \n on every platform
+        List<Metric> recorded = recorded();
+        List<String> names = new ArrayList<String>();
+        for (Metric metric : recorded) {
+            if (!names.contains(metric.name)) {
+                names.add(metric.name);
+            }
+        }
+        List<Metric> sorted = new ArrayList<Metric>();
+        for (String name : names) {
+            for (Metric metric : recorded) {
+                if (metric.name.equals(name)) {
+                    sorted.add(metric);
+                }
+            }
+        }
+        String described = null;
+        for (Metric metric : sorted) {
+            String name = PREFIX + metric.name + (metric.type == Type.TIMER || metric.type == Type.SUMMARY ? "_seconds" : "");
+            if (!name.equals(described)) {
+                described = name;
+                out.printf("# TYPE %s %s\n", name, metric.type == Type.TIMER ? "summary" : metric.type.name().toLowerCase(Locale.ROOT));
+                out.printf("# HELP %s %s\n", name, metric.help);
+            }
+            String labels = labels(metric.labels, null);
+            switch (metric.type) {
+                case TIMER:
+                    out.printf("%s_count%s %d\n", name, labels, metric.count);
+                    out.printf("%s_sum%s %s\n", name, labels, number(metric.sum));
+                    break;
+                case SUMMARY:
+                    Histogram histogram = metric.histogram;
+                    // quantiles are optional, an empty window only has count and sum
+                    if (histogram.count() > 0) {
+                        for (double quantile : QUANTILES) {
+                            out.printf("%s%s %s\n", name, labels(metric.labels, number(quantile)),
+                                    number(histogram.percentile(quantile * 100) / 1e9));
+                        }
+                    }
+                    out.printf("%s_count%s %d\n", name, labels, histogram.count());
+                    out.printf("%s_sum%s %s\n", name, labels, number(histogram.sum() / 1e9));
+                    break;
+                case COUNTER:
+                    out.printf("%s_total%s %s\n", name, labels, number(metric.value));
+                    break;
+                default:
+                    out.printf("%s%s %s\n", name, labels, number(metric.value));
+                    break;
+            }
+        }
+        out.printf("# EOF\n");
+    }
+
+    // metrics updated at least once, handles created for a path not taken are left out
+    private List<Metric> recorded() {
+        List<Metric> recorded = new ArrayList<Metric>();
+        for (Metric metric : metrics.values()) {
+            synchronized (metric) {
+                if (metric.count > 0) {
+                    recorded.add(metric);
+                }
+            }
+        }
+        return recorded;
+    }
+
+    private static String labels(String[] labels, String quantile) {
+        if (labels.length < 2 && quantile == null)
+            return "";
+        StringBuilder text = new StringBuilder("{");
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(labels[i]).append("=\"");
+            String value = labels[i+1] == null ? "" : labels[i+1];
+            for (int j = 0; j < value.length(); j++) {
+                char ch = value.charAt(j);
+                if (ch == '\\' || ch == '"') {
+                    text.append('\\').append(ch);
+                } else if (ch == '\n') {
+                    text.append("\\n");
+                } else {
+                    text.append(ch);
+                }
+            }
+            text.append('"');
+        }
+        if (quantile != null) {
+            text.append(labels.length < 2 ? "" : ",").append("quantile=\"").append(quantile).append('"');
+        }
+        return text.append('}').toString();
+    }
+
+    // shortest text that reads back as <value>, without exponent; trailing zeros only go after a decimal point
+    static String number(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15)
+            return Long.toString((long) value);
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            return Double.toString(value);
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    private static String json(String text) {
+        if (text == null)
+            return "null";
+        StringBuilder json = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            switch (ch) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (ch < 0x20) {
+                        json.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        json.append(ch);
+                    }
+            }
+        }
+        return json.append('"').toString();
+    }
+}
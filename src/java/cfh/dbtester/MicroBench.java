@@ -0,0 +1,253 @@
+package cfh.dbtester;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+// in-process benchmarks of the output and metadata hot paths against SyntheticJdbc; every benchmark is warmed up,
+// then timed in samples, the median ns/op is compared with a baseline file
+class MicroBench {
+
+    static final double TOLERANCE = 0.25;
+
+    private static final long WARMUP = 1000_000_000L;
+    private static final long SAMPLE = 200_000_000L;
+    private static final int SAMPLES = 10;
+    private static final int ROWS = 1000;
+    private static final int[] SIZES = { 10, 20, 20, 40, 14, 23 };
+    private static final String ROW_FORMAT = "%-10.10s|%-20.20s|%-20.20s|%-40.40s|%-14.14s|%-23.23s%n";
+    private static final String LINE = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ 0123456789 0123456789 0123456789";
+    private static final String FORMAT = "%-20s %12s %12s %12s %14s %12s %8s%n";
+    private static final String RESULT = "%-20s %12.1f %12.1f %12.1f %14.1f %12s %8s%n";
+
+    private abstract static class Bench {
+
+        final String name;
+
+        Bench(String name) {
+            this.name = name;
+        }
+
+        void setUp() throws Exception {
+        }
+
+        // one operation, the result is kept so the JIT cannot drop the work
+        abstract long op() throws Exception;
+
+        void tearDown() throws Exception {
+        }
+    }
+
+    private static class Result {
+
+        final String name;
+        final double median;
+        final double min;
+        final double max;
+        Double baseline;
+
+        Result(String name, double[] samples) {
+            this.name = name;
+            Arrays.sort(samples);
+            median = samples[samples.length / 2];
+            min = samples[0];
+            max = samples[samples.length - 1];
+        }
+
+        boolean regressed() {
+            return baseline != null && median > baseline * (1 + TOLERANCE);
+        }
+    }
+
+    private final List<Bench> benches = new ArrayList<Bench>();
+    private final List<Result> results = new ArrayList<Result>();
+    private long sink = 0;
+
+    MicroBench() {
+        final PrintStream nowhere = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        final Object[] values = { 42, 42000126L, 10.5, "name 42", "2.94", "2017-07-14 02:40:42.0" };
+
+        benches.add(new Bench("render.printf") {
+            @Override
+            long op() {
+                nowhere.printf(ROW_FORMAT, values);
+                return values.length;
+            }
+        });
+        benches.add(new Bench("render.rowrenderer") {
+            private final RowRenderer renderer = new RowRenderer(nowhere, SIZES, '|');
+            @Override
+            long op() {
+                renderer.row(values);
+                return renderer.columns();
+            }
+        });
+        benches.add(new Bench("logprinter.tee") {
+            private File file;
+            private LogPrinter printer;
+            @Override
+            void setUp() throws IOException {
+                file = File.createTempFile("dbtester-bench", ".log");
+                file.deleteOnExit();
+                printer = new LogPrinter(nowhere, file.getPath());
+            }
+            @Override
+            long op() {
+                printer.println(LINE);
+                return LINE.length();
+            }
+            @Override
+            void tearDown() {
+                printer.close();
+                file.delete();
+            }
+        });
+        benches.add(new Bench("resultset.iterate") {
+            private final List<Object[]> data = SyntheticJdbc.rowData(ROWS);
+            private final RowRenderer renderer = new RowRenderer(nowhere, SIZES, '|');
+            @Override
+            long op() throws SQLException {
+                ResultSet rset = SyntheticJdbc.rows(data);
+                ColumnReader[] readers = ColumnReader.create(rset.getMetaData());
+                long rows = 0;
+                while (rset.next()) {
+                    renderer.begin();
+                    for (ColumnReader reader : readers) {
+                        reader.read(rset);
+                        reader.render(renderer);
+                    }
+                    renderer.end();
+                    rows += 1;
+                }
+                rset.close();
+                return rows;
+            }
+        });
+        benches.add(new Bench("metadata.columns") {
+            private final DatabaseMetaData metaData = SyntheticJdbc.metaData(5, 200, 20);
+            @Override
+            long op() throws SQLException {
+                TableIndex index = TableIndex.read(metaData);
+                List<TableIndex.Table> wanted = new ArrayList<TableIndex.Table>();
+                for (int i = 0; i < 40; i++) {
+                    wanted.addAll(index.find("TABLE" + i * 5));
+                }
+                return index.columns(metaData, wanted).size();
+            }
+        });
+    }
+
+    void run() throws Exception {
+        for (Bench bench : benches) {
+            bench.setUp();
+            try {
+                measure(bench, WARMUP);
+                double[] samples = new double[SAMPLES];
+                for (int i = 0; i < SAMPLES; i++) {
+                    samples[i] = measure(bench, SAMPLE);
+                }
+                results.add(new Result(bench.name, samples));
+            } finally {
+                bench.tearDown();
+            }
+        }
+    }
+
+    // ns per operation over at least <duration> ns
+    private double measure(Bench bench, long duration) throws Exception {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < 16; i++) {
+                sink += bench.op();
+            }
+            ops += 16;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < duration);
+        return (double) elapsed / ops;
+    }
+
+    // baseline values of the benchmarks, true if the file existed
+    boolean compare(File file) throws IOException {
+        if (!file.exists())
+            return false;
+        Properties props = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+        for (Result result : results) {
+            String value = props.getProperty(result.name);
+            if (value != null) {
+                try {
+                    result.baseline = Double.valueOf(value);
+                } catch (NumberFormatException ex) {
+                    result.baseline = null;
+                }
+            }
+        }
+        return true;
+    }
+
+    void save(File file) throws IOException {
+        Properties props = new Properties();
+        for (Result result : results) {
+            props.setProperty(result.name, String.format(Locale.ROOT, "%.1f", result.median));
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            props.store(out, "DBTester bench: median ns/op, java " + System.getProperty("java.version")
+                    + ", " + System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        } finally {
+            out.close();
+        }
+    }
+
+    int regressions() {
+        int count = 0;
+        for (Result result : results) {
+            if (result.regressed()) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    void report(PrintStream out) {
+        out.printf(FORMAT, "[benchmark]", "ns/op", "min", "max", "ops/s", "baseline", "change");
+        for (Result result : results) {
+            String baseline = "";
+            String change = "";
+            if (result.baseline != null) {
+                baseline = String.format("%.1f", result.baseline);
+                change = String.format("%+.0f%%%s", 100 * (result.median / result.baseline - 1), result.regressed() ? "!" : "");
+            }
+            out.printf(RESULT, result.name, result.median, result.min, result.max, 1e9 / result.median, baseline, change);
+        }
+        if (sink == 42) {
+            out.println();
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package cfh.dbtester;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+// driver without a database, for measuring DBTester itself:
+//   jdbc:dbtester:mock[:<key>=<value>;...]
+//     connect=<ms>, execute=<ms>    latency of opening a connection, of executing a statement or batch
+//     prepare=<ms>                  latency of parsing: prepareStatement and every execute of a plain Statement
+//     fetch=<ms>                    latency of each round trip of <fetchsize> rows
+//     fetchsize=<n>                 rows per round trip when the statement sets none, default 10
+//     rows=<n>                      rows of every query result, default 1000
+//     types=<type>,...              int, bigint, double, decimal, varchar, date, timestamp, boolean
+//     columns=<n>                   result columns, the types repeated, default the number of types
+//     schemas=<n>, tables=<n>, tablecolumns=<n>   metadata size, default 10, 100 and 20
+public class MockDriver implements Driver {
+
+    static final String PREFIX = "jdbc:dbtester:mock";
+
+    static {
+        try {
+            DriverManager.registerDriver(new MockDriver());
+        } catch (SQLException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private static class Config {
+
+        double connect = 0;
+        double execute = 0;
+        double prepare = 0;
+        double fetch = 0;
+        int fetchSize = 10;
+        int rows = 1000;
+        int[] types = SyntheticJdbc.ROW_TYPES;
+        String[] labels = SyntheticJdbc.ROW_LABELS;
+        int schemas = 10;
+        int tables = 100;
+        int tableColumns = 20;
+
+        Config(String url) throws SQLException {
+            String options = url.substring(PREFIX.length());
+            if (options.startsWith(":")) {
+                options = options.substring(1);
+            }
+            int columns = -1;
+            for (String option : options.split(";")) {
+                if (option.trim().isEmpty())
+                    continue;
+                String[] tokens = option.split("=", 2);
+                String key = tokens[0].trim().toLowerCase(Locale.ROOT);
+                String value = tokens.length > 1 ? tokens[1].trim() : "";
+                try {
+                    if (key.equals("connect")) {
+                        connect = Double.parseDouble(value);
+                    } else if (key.equals("execute")) {
+                        execute = Double.parseDouble(value);
+                    } else if (key.equals("prepare")) {
+                        prepare = Double.parseDouble(value);
+                    } else if (key.equals("fetch")) {
+                        fetch = Double.parseDouble(value);
+                    } else if (key.equals("fetchsize")) {
+                        fetchSize = Math.max(1, Integer.parseInt(value));
+                    } else if (key.equals("rows")) {
+                        rows = Integer.parseInt(value);
+                    } else if (key.equals("types")) {
+                        types = types(value.split(","));
+                    } else if (key.equals("columns")) {
+                        columns = Integer.parseInt(value);
+                    } else if (key.equals("schemas")) {
+                        schemas = Integer.parseInt(value);
+                    } else if (key.equals("tables")) {
+                        tables = Integer.parseInt(value);
+                    } else if (key.equals("tablecolumns")) {
+                        tableColumns = Integer.parseInt(value);
+                    } else {
+                        throw new SQLException("unknown mock option: " + option);
+                    }
+                } catch (NumberFormatException ex) {
+                    throw new SQLException("invalid mock option: " + option, ex);
+                }
+            }
+            if (columns > 0) {
+                int[] repeated = new int[columns];
+                for (int i = 0; i < columns; i++) {
+                    repeated[i] = types[i % types.length];
+                }
+                types = repeated;
+            }
+            if (columns > 0 || types != SyntheticJdbc.ROW_TYPES) {
+                labels = new String[types.length];
+                for (int i = 0; i < types.length; i++) {
+                    labels[i] = "C" + (i+1);
+                }
+            }
+        }
+
+        private static int[] types(String[] names) throws SQLException {
+            int[] result = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                String name = names[i].trim().toLowerCase(Locale.ROOT);
+                if (name.equals("int") || name.equals("integer")) {
+                    result[i] = Types.INTEGER;
+                } else if (name.equals("bigint") || name.equals("long")) {
+                    result[i] = Types.BIGINT;
+                } else if (name.equals("double")) {
+                    result[i] = Types.DOUBLE;
+                } else if (name.equals("decimal") || name.equals("numeric")) {
+                    result[i] = Types.DECIMAL;
+                } else if (name.equals("varchar") || name.equals("string")) {
+                    result[i] = Types.VARCHAR;
+                } else if (name.equals("date")) {
+                    result[i] = Types.DATE;
+                } else if (name.equals("timestamp")) {
+                    result[i] = Types.TIMESTAMP;
+                } else if (name.equals("boolean")) {
+                    result[i] = Types.BOOLEAN;
+                } else {
+                    throw new SQLException("unknown mock type: " + names[i]);
+                }
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url))
+            return null;
+        Config config = new Config(url);
+        pause(config.connect);
+        String user = info == null ? null : info.getProperty("user");
+        return connection(config, url, user);
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(PREFIX);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException("getParentLogger");
+    }
+
+    private static Connection connection(final Config config, final String url, final String user) {
+        final DatabaseMetaData[] metaData = new DatabaseMetaData[1];
+        return (Connection) Proxy.newProxyInstance(MockDriver.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new InvocationHandler() {
+                    private boolean closed = false;
+                    private boolean autoCommit = true;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if (name.equals("close")) {
+                            closed = true;
+                            return null;
+                        }
+                        if (name.equals("isClosed"))
+                            return closed;
+                        if (name.equals("isValid"))
+                            return !closed;
+                        if (closed && !isObjectMethod(name))
+                            throw new SQLException("connection closed");
+                        if (name.equals("createStatement"))
+                            return statement(config, (Connection) proxy, null);
+                        if (name.equals("prepareStatement") || name.equals("prepareCall")) {
+                            pause(config.prepare);
+                            return statement(config, (Connection) proxy, (String) args[0]);
+                        }
+                        if (name.equals("getMetaData")) {
+                            if (metaData[0] == null) {
+                                metaData[0] = metaData(config, (Connection) proxy, url, user);
+                            }
+                            return metaData[0];
+                        }
+                        if (name.equals("getAutoCommit"))
+                            return autoCommit;
+                        if (name.equals("setAutoCommit")) {
+                            autoCommit = (Boolean) args[0];
+                            return null;
+                        }
+                        if (name.equals("commit") || name.equals("rollback")) {
+                            pause(config.execute);
+                            return null;
+                        }
+                        if (name.equals("getTransactionIsolation"))
+                            return Connection.TRANSACTION_READ_COMMITTED;
+                        if (name.equals("getCatalog") || name.equals("getSchema") || name.equals("getWarnings"))
+                            return null;
+                        return fallback(proxy, method, args);
+                    }
+                });
+    }
+
+    // synthetic metadata, the methods naming the connection answered here
+    private static DatabaseMetaData metaData(Config config, final Connection conn, final String url, final String user) {
+        final DatabaseMetaData synthetic = SyntheticJdbc.metaData(config.schemas, config.tables, config.tableColumns);
+        return (DatabaseMetaData) Proxy.newProxyInstance(MockDriver.class.getClassLoader(),
+                new Class<?>[] { DatabaseMetaData.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if (name.equals("getConnection"))
+                            return conn;
+                        if (name.equals("getURL"))
+                            return url;
+                        if (name.equals("getUserName"))
+                            return user;
+                        if (name.equals("getDatabaseProductName"))
+                            return "DBTester mock";
+                        try {
+                            return method.invoke(synthetic, args);
+                        } catch (InvocationTargetException ex) {
+                            throw ex.getCause();
+                        }
+                    }
+                });
+    }
+
+    // Statement, PreparedStatement and CallableStatement: queries return <rows> generated rows, everything else updates one row
+    private static Statement statement(final Config config, final Connection conn, final String prepared) {
+        Class<?> type = prepared == null ? Statement.class : PreparedStatement.class;
+        return (Statement) Proxy.newProxyInstance(MockDriver.class.getClassLoader(),
+                new Class<?>[] { type }, new InvocationHandler() {
+                    private int fetchSize = 0;
+                    private int batch = 0;
+                    private ResultSet result = null;
+                    private int updateCount = -1;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if (name.equals("setFetchSize")) {
+                            fetchSize = (Integer) args[0];
+                            return null;
+                        }
+                        if (name.equals("getFetchSize"))
+                            return fetchSize;
+                        if (name.equals("getConnection"))
+                            return conn;
+                        if (name.equals("addBatch")) {
+                            batch += 1;
+                            return null;
+                        }
+                        if (name.equals("clearBatch")) {
+                            batch = 0;
+                            return null;
+                        }
+                        if (name.equals("executeBatch")) {
+                            pause(config.execute);
+                            int[] counts = new int[batch];
+                            Arrays.fill(counts, 1);
+                            batch = 0;
+                            return counts;
+                        }
+                        if (name.startsWith("execute")) {
+                            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : prepared;
+                            pause(prepared == null ? config.prepare + config.execute : config.execute);
+                            boolean query = name.equals("executeQuery") || isQuery(sql);
+                            result = query ? resultSet(config, fetchSize) : null;
+                            updateCount = query ? -1 : 1;
+                            if (name.equals("executeQuery"))
+                                return result;
+                            if (name.startsWith("executeUpdate"))
+                                return 1;
+                            if (name.startsWith("executeLargeUpdate"))
+                                return 1L;
+                            return query;
+                        }
+                        if (name.equals("getResultSet"))
+                            return result;
+                        if (name.equals("getUpdateCount"))
+                            return updateCount;
+                        if (name.equals("getMoreResults")) {
+                            result = null;
+                            updateCount = -1;
+                            return false;
+                        }
+                        if (name.startsWith("set") || name.equals("clearParameters") || name.equals("close")
+                                || name.equals("clearWarnings") || name.equals("getWarnings"))
+                            return null;
+                        return fallback(proxy, method, args);
+                    }
+                });
+    }
+
+    private static ResultSet resultSet(final Config config, int statementFetchSize) {
+        final int fetchSize = statementFetchSize > 0 ? statementFetchSize : config.fetchSize;
+        List<Object[]> rows = new AbstractList<Object[]>() {
+            private long current = -1;
+            private Object[] values = null;
+
+            // one round trip each time a new block of <fetchsize> rows is reached
+            @Override
+            public Object[] get(int index) {
+                if (index != current) {
+                    if (index % fetchSize == 0) {
+                        pause(config.fetch);
+                    }
+                    current = index;
+                    values = SyntheticJdbc.row(config.types, index);
+                }
+                return values;
+            }
+
+            @Override
+            public int size() {
+                return config.rows;
+            }
+        };
+        return SyntheticJdbc.resultSet(config.labels, config.types, rows);
+    }
+
+    private static boolean isQuery(String sql) {
+        if (sql == null)
+            return false;
+        String keyword = ScriptSplitter.keyword(sql);
+        return keyword.equals("SELECT") || keyword.equals("WITH") || keyword.equals("VALUES")
+                || keyword.equals("SHOW") || keyword.equals("EXPLAIN") || keyword.equals("DESCRIBE");
+    }
+
+    private static void pause(double millis) {
+        if (millis > 0) {
+            LockSupport.parkNanos((long) (millis * TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+    }
+
+    private static boolean isObjectMethod(String name) {
+        return name.equals("toString") || name.equals("hashCode") || name.equals("equals");
+    }
+
+    private static Object fallback(Object proxy, Method method, Object[] args) throws SQLException {
+        String name = method.getName();
+        if (name.equals("toString"))
+            return "MockDriver " + method.getDeclaringClass().getSimpleName();
+        if (name.equals("hashCode"))
+            return System.identityHashCode(proxy);
+        if (name.equals("equals"))
+            return proxy == args[0];
+        if (name.equals("unwrap"))
+            throw new SQLException("not a wrapper");
+        if (name.equals("isWrapperFor"))
+            return false;
+        throw new SQLFeatureNotSupportedException(method.getDeclaringClass().getSimpleName() + "." + name);
+    }
+}
@@ -0,0 +1,188 @@
+package cfh.dbtester;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+
+// execution plan of sql: with the server's runtime statistics, the mechanism chosen by the database product;
+// every statement runs in a transaction that is rolled back (also with auto-commit off), a SELECT or WITH
+// may still modify data (SELECT INTO, data-modifying CTEs); the client time of the explained run is kept
+class PlanExplainer {
+
+    enum Vendor { POSTGRESQL, MYSQL, MARIADB, ORACLE, SQLSERVER, OTHER }
+
+    private final Connection conn;
+    private final String sql;
+    private final int fetchSize;
+    private final Vendor vendor;
+
+    private long execute = 0;
+    private long fetch = 0;
+    private long rows = 0;
+    private boolean measured = false;
+
+    PlanExplainer(Connection conn, String product, String sql, int fetchSize) {
+        this.conn = conn;
+        this.sql = sql;
+        this.fetchSize = fetchSize;
+        this.vendor = vendor(product);
+    }
+
+    static Vendor vendor(String product) {
+        String name = product == null ? "" : product.toLowerCase(Locale.ROOT);
+        if (name.contains("postgres"))
+            return Vendor.POSTGRESQL;
+        if (name.contains("mariadb"))
+            return Vendor.MARIADB;
+        if (name.contains("mysql"))
+            return Vendor.MYSQL;
+        if (name.contains("oracle"))
+            return Vendor.ORACLE;
+        if (name.contains("microsoft sql server"))
+            return Vendor.SQLSERVER;
+        return Vendor.OTHER;
+    }
+
+    void run(PrintStream out) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) {
+            conn.setAutoCommit(false);
+        }
+        Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            if (fetchSize > 0) {
+                stmt.setFetchSize(fetchSize);
+            }
+            switch (vendor) {
+                case POSTGRESQL:
+                    execute(stmt, "EXPLAIN (ANALYZE, BUFFERS) " + sql, out, true, true);
+                    break;
+                case MYSQL:
+                    execute(stmt, "EXPLAIN FORMAT=JSON " + sql, out, true, false);
+                    try {
+                        execute(stmt, "EXPLAIN ANALYZE " + sql, out, true, true);
+                    } catch (SQLException ex) {
+                        out.printf("EXPLAIN ANALYZE (MySQL 8.0.18+, queries only): %s%n", ex);
+                    }
+                    break;
+                case MARIADB:
+                    execute(stmt, "ANALYZE FORMAT=JSON " + sql, out, true, true);
+                    break;
+                case ORACLE:
+                    explainOracle(stmt, out);
+                    break;
+                case SQLSERVER:
+                    stmt.execute("SET STATISTICS XML ON");
+                    try {
+                        execute(stmt, sql, out, true, true);
+                    } finally {
+                        stmt.execute("SET STATISTICS XML OFF");
+                    }
+                    break;
+                default:
+                    execute(stmt, "EXPLAIN " + sql, out, true, false);
+                    break;
+            }
+        } finally {
+            stmt.close();
+            conn.rollback();
+            if (autoCommit) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    // client side view of the same run, to be compared with the times reported in the plan
+    void report(PrintStream out) {
+        if (measured) {
+            out.printf("client: %.3f ms execute, %.3f ms fetch, %.3f ms total%s%n",
+                    execute / 1e6, fetch / 1e6, (execute + fetch) / 1e6, rows > 0 ? ", " + rows + " rows" : "");
+        } else {
+            out.printf("client: no runtime statistics, estimated plan only%n");
+        }
+    }
+
+    // the cursor's plan with actual rows and times from STATISTICS_LEVEL=ALL, the estimated plan if
+    // DISPLAY_CURSOR is not allowed (needs SELECT on V$SQL_PLAN_STATISTICS_ALL); the session's level is
+    // restored afterwards, TYPICAL (the default) if V$PARAMETER cannot be read
+    private void explainOracle(Statement stmt, PrintStream out) throws SQLException {
+        String level = "TYPICAL";
+        try {
+            ResultSet rset = stmt.executeQuery("SELECT VALUE FROM V$PARAMETER WHERE NAME = 'statistics_level'");
+            try {
+                if (rset.next() && rset.getString(1) != null) {
+                    level = rset.getString(1).trim();
+                }
+            } finally {
+                rset.close();
+            }
+        } catch (SQLException ex) {
+            out.printf("STATISTICS_LEVEL: %s, set to %s afterwards%n", ex, level);
+        }
+        if (!level.matches("[A-Za-z]+"))
+            throw new SQLException("unexpected STATISTICS_LEVEL: " + level);
+        stmt.execute("ALTER SESSION SET STATISTICS_LEVEL = ALL");
+        try {
+            execute(stmt, sql, out, false, true);
+            try {
+                execute(stmt, "SELECT PLAN_TABLE_OUTPUT FROM TABLE(DBMS_XPLAN.DISPLAY_CURSOR(NULL, NULL, 'ALLSTATS LAST'))",
+                        out, true, false);
+            } catch (SQLException ex) {
+                out.printf("DISPLAY_CURSOR: %s%n", ex);
+                execute(stmt, "EXPLAIN PLAN FOR " + sql, out, false, false);
+                execute(stmt, "SELECT PLAN_TABLE_OUTPUT FROM TABLE(DBMS_XPLAN.DISPLAY())", out, true, false);
+            }
+        } finally {
+            stmt.execute("ALTER SESSION SET STATISTICS_LEVEL = " + level);
+        }
+    }
+
+    // all results of <text>, printed if <print> (for SQL Server only the showplan results), timed if <measure>
+    private void execute(Statement stmt, String text, PrintStream out, boolean print, boolean measure) throws SQLException {
+        long start = System.nanoTime();
+        boolean isResultSet = stmt.execute(text);
+        int count = stmt.getUpdateCount();
+        if (measure) {
+            execute += System.nanoTime() - start;
+            measured = true;
+        }
+        while (isResultSet || count != -1) {
+            if (isResultSet) {
+                start = System.nanoTime();
+                ResultSet rset = stmt.getResultSet();
+                try {
+                    ResultSetMetaData meta = rset.getMetaData();
+                    int columns = meta.getColumnCount();
+                    boolean plan = vendor != Vendor.SQLSERVER || meta.getColumnLabel(1).contains("Showplan");
+                    StringBuilder line = new StringBuilder();
+                    while (rset.next()) {
+                        line.setLength(0);
+                        for (int i = 1; i <= columns; i++) {
+                            line.append(i > 1 ? " | " : "").append(rset.getString(i));
+                        }
+                        if (print && plan) {
+                            out.println(line);
+                        } else if (measure) {
+                            rows += 1;
+                        }
+                    }
+                } finally {
+                    rset.close();
+                }
+                if (measure) {
+                    fetch += System.nanoTime() - start;
+                }
+            }
+            start = System.nanoTime();
+            isResultSet = stmt.getMoreResults();
+            count = stmt.getUpdateCount();
+            if (measure) {
+                execute += System.nanoTime() - start;
+            }
+        }
+    }
+}
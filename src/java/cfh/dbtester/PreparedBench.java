@@ -0,0 +1,433 @@
+package cfh.dbtester;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// the parameterized sql: run as a Statement with literals, as a PreparedStatement prepared for every execution
+// (with the driver's implicit statement cache off and on, where the connection has one) and as one reused
+// PreparedStatement; the parameters come from a values file or are the execution number; each mode is rolled back,
+// queries included since a WITH or SELECT may modify data too
+class PreparedBench {
+
+    private static final String FORMAT = "%-16.16s %10d %10.3f %12.1f%n";
+    private static final int CACHE_SIZE = 20;
+    // typed values in the values file, bound and written as that type whatever the driver reports
+    private static final String[] PREFIXES = { "int:", "decimal:", "double:", "string:" };
+    private static final int[] PREFIX_TYPES = { Types.BIGINT, Types.DECIMAL, Types.DOUBLE, Types.VARCHAR };
+
+    private enum Mode { STATEMENT, PREPARE, CACHED, REUSE }
+
+    private final Connection conn;
+    private final String sql;
+    private final int count;
+    private final int warmup;
+    private final int fetchSize;
+    private final List<String[]> values;
+    private final List<Integer> markers;
+    private final boolean query;
+    private final int[] types;
+    private String typing = null;
+
+    private final List<String> names = new ArrayList<String>();
+    private final List<Histogram> latencies = new ArrayList<Histogram>();
+    private final List<Long> times = new ArrayList<Long>();
+    private String cache = null;
+
+    // <values> null for generated parameters
+    PreparedBench(Connection conn, String sql, int count, int warmup, int fetchSize, List<String[]> values) {
+        this.conn = conn;
+        this.sql = sql;
+        this.count = count;
+        this.warmup = warmup;
+        this.fetchSize = fetchSize;
+        this.values = values;
+        this.markers = markers(sql);
+        this.types = new int[markers.size()];
+        Arrays.fill(types, Types.VARCHAR);
+        String keyword = ScriptSplitter.keyword(sql);
+        this.query = keyword.equals("SELECT") || keyword.equals("WITH") || keyword.equals("VALUES");
+    }
+
+    // one row of at least <parameters> values per line, separated by commas; empty lines and lines starting with #
+    // are skipped; int:, decimal: and double: values must be numbers
+    static List<String[]> readValues(File file, int parameters) throws IOException {
+        List<String[]> values = new ArrayList<String[]>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        try {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number += 1;
+                if (line.trim().isEmpty() || line.trim().startsWith("#"))
+                    continue;
+                String[] row = line.split(",", -1);
+                if (row.length < parameters)
+                    throw new IOException(file + " line " + number + ": " + row.length + " value(s) for "
+                            + parameters + " parameter(s)");
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = row[i].trim();
+                    int type = prefix(row[i]);
+                    if (type == Types.BIGINT && !isInteger(value(row[i]))
+                            || (type == Types.DECIMAL || type == Types.DOUBLE) && !isNumber(value(row[i])))
+                        throw new IOException(file + " line " + number + ": not a number: " + row[i]);
+                }
+                values.add(row);
+            }
+        } finally {
+            reader.close();
+        }
+        return values;
+    }
+
+    // ? markers in <sql>
+    static int parameters(String sql) {
+        return markers(sql).size();
+    }
+
+    // true if a statement other than a query would get the same value row twice within one mode,
+    // an INSERT then fails on unique keys (every mode is rolled back, so the modes may share the rows)
+    boolean repeatsValues() {
+        return !query && values != null && (long) warmup + count > values.size();
+    }
+
+    void run() throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            describe();
+            step("statement", Mode.STATEMENT);
+            Method enable = method("setImplicitCachingEnabled", boolean.class);
+            if (enable == null) {
+                cache = "no implicit statement cache on " + conn.getClass().getName()
+                        + ", some drivers take it from the URL (MySQL cachePrepStmts, PostgreSQL prepareThreshold)";
+                step("prepare", Mode.PREPARE);
+            } else {
+                cache = "implicit statement cache of " + conn.getClass().getName();
+                Method enabled = method("getImplicitCachingEnabled");
+                Method size = method("getStatementCacheSize");
+                Method resize = method("setStatementCacheSize", int.class);
+                Object wasEnabled = invoke(enabled);
+                Object oldSize = invoke(size);
+                try {
+                    invoke(enable, false);
+                    step("prepare", Mode.PREPARE);
+                    if (oldSize instanceof Integer && (Integer) oldSize <= 0) {
+                        invoke(resize, CACHE_SIZE);
+                    }
+                    invoke(enable, true);
+                    step("prepare cached", Mode.CACHED);
+                } finally {
+                    if (wasEnabled instanceof Boolean) {
+                        invoke(enable, wasEnabled);
+                    }
+                    if (oldSize instanceof Integer && resize != null) {
+                        invoke(resize, oldSize);
+                    }
+                }
+            }
+            step("reuse", Mode.REUSE);
+        } finally {
+            if (autoCommit) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    void report(PrintStream out) {
+        Histogram.printHeader(out);
+        for (int i = 0; i < names.size(); i++) {
+            latencies.get(i).print(out, names.get(i));
+        }
+        out.printf("%-16.16s %10s %10s %12s%n", "[mode]", "count", "s", "ops/s");
+        for (int i = 0; i < names.size(); i++) {
+            double seconds = times.get(i) / 1e9;
+            long done = latencies.get(i).count();
+            out.printf(FORMAT, names.get(i), done, seconds, done / seconds);
+        }
+        out.printf("%d parameter(s) %s, %s, %s%n", markers.size(),
+                values == null ? "generated" : "from " + values.size() + " value rows", typing, cache);
+    }
+
+    void record(Metrics metrics) {
+        for (int i = 0; i < names.size(); i++) {
+            metrics.histogram("prepared_benchmark", "Executions of the parameterized sql: per mode",
+                    latencies.get(i), "mode", names.get(i));
+        }
+    }
+
+    private void step(String name, Mode mode) throws SQLException {
+        Histogram latency = new Histogram();
+        Statement stmt = null;
+        PreparedStatement reused = null;
+        long start = System.nanoTime();
+        try {
+            if (mode == Mode.STATEMENT) {
+                stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                if (fetchSize > 0) {
+                    stmt.setFetchSize(fetchSize);
+                }
+            } else if (mode == Mode.REUSE) {
+                reused = prepare();
+            }
+            start = System.nanoTime();
+            for (int i = -warmup; i < count; i++) {
+                String[] row = row(i + warmup);
+                String text = mode == Mode.STATEMENT ? literal(row) : null;
+                long t0 = System.nanoTime();
+                if (mode == Mode.STATEMENT) {
+                    read(stmt, stmt.execute(text));
+                } else if (mode == Mode.REUSE) {
+                    bind(reused, row);
+                    read(reused, reused.execute());
+                } else {
+                    PreparedStatement prepared = prepare();
+                    try {
+                        bind(prepared, row);
+                        read(prepared, prepared.execute());
+                    } finally {
+                        prepared.close();
+                    }
+                }
+                long t1 = System.nanoTime();
+                if (i < 0) {
+                    start = t1;
+                    continue;
+                }
+                latency.record(t1 - t0);
+            }
+        } finally {
+            times.add(System.nanoTime() - start);
+            names.add(name);
+            latencies.add(latency);
+            if (stmt != null) {
+                stmt.close();
+            }
+            if (reused != null) {
+                reused.close();
+            }
+            conn.rollback();
+        }
+    }
+
+    private PreparedStatement prepare() throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        if (fetchSize > 0) {
+            stmt.setFetchSize(fetchSize);
+        }
+        return stmt;
+    }
+
+    // parameter types from the driver's ParameterMetaData, VARCHAR (bound with setString) where it has none
+    private void describe() {
+        if (markers.isEmpty()) {
+            typing = "no parameter types";
+            return;
+        }
+        try {
+            PreparedStatement stmt = prepare();
+            try {
+                ParameterMetaData meta = stmt.getParameterMetaData();
+                int count = Math.min(types.length, meta.getParameterCount());
+                for (int i = 0; i < count; i++) {
+                    types[i] = meta.getParameterType(i + 1);
+                }
+                typing = "parameter types from ParameterMetaData";
+            } finally {
+                stmt.close();
+            }
+        } catch (SQLException ex) {
+            Arrays.fill(types, Types.VARCHAR);
+            typing = "no ParameterMetaData (" + ex.getMessage() + "), untyped values bound as strings";
+        }
+    }
+
+    // parameters of execution <number>, taken round robin from the values (queries only, see repeatsValues)
+    // or the number itself
+    private String[] row(long number) {
+        String[] row = new String[markers.size()];
+        String[] given = values == null || values.isEmpty() ? null : values.get((int) (number % values.size()));
+        for (int i = 0; i < row.length; i++) {
+            row[i] = given == null ? "int:" + (number + 1) : given[i];
+        }
+        return row;
+    }
+
+    // bound as its prefix or the reported parameter type says, as string if it does not parse as that type;
+    // NULL as null of the parameter type
+    private void bind(PreparedStatement stmt, String[] row) throws SQLException {
+        for (int i = 0; i < row.length; i++) {
+            String value = row[i];
+            if (value.equalsIgnoreCase("null")) {
+                stmt.setNull(i + 1, types[i]);
+                continue;
+            }
+            switch (type(i, value)) {
+                case Types.BIGINT: stmt.setLong(i + 1, Long.parseLong(value(value))); break;
+                case Types.DECIMAL: stmt.setBigDecimal(i + 1, new BigDecimal(value(value))); break;
+                case Types.DOUBLE: stmt.setDouble(i + 1, Double.parseDouble(value(value))); break;
+                default: stmt.setString(i + 1, value(value)); break;
+            }
+        }
+    }
+
+    // BIGINT, DECIMAL, DOUBLE or VARCHAR for <value> of parameter <index>
+    private int type(int index, String value) {
+        int type = prefix(value);
+        if (type != Types.NULL)
+            return type;
+        switch (types[index]) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return isInteger(value) ? Types.BIGINT : Types.VARCHAR;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return isNumber(value) ? Types.DECIMAL : Types.VARCHAR;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return isNumber(value) ? Types.DOUBLE : Types.VARCHAR;
+            default:
+                return Types.VARCHAR;
+        }
+    }
+
+    // type of a prefixed value, NULL if it has no prefix
+    private static int prefix(String value) {
+        for (int i = 0; i < PREFIXES.length; i++) {
+            if (value.startsWith(PREFIXES[i]))
+                return PREFIX_TYPES[i];
+        }
+        return Types.NULL;
+    }
+
+    // <value> without its prefix
+    private static String value(String value) {
+        for (String prefix : PREFIXES) {
+            if (value.startsWith(prefix))
+                return value.substring(prefix.length());
+        }
+        return value;
+    }
+
+    // the sql: with each ? replaced by the literal of its value
+    private String literal(String[] row) {
+        StringBuilder text = new StringBuilder(sql.length() + 16 * row.length);
+        int last = 0;
+        for (int i = 0; i < markers.size(); i++) {
+            int index = markers.get(i);
+            text.append(sql, last, index);
+            String value = row[i];
+            if (value.equalsIgnoreCase("null")) {
+                text.append(value);
+            } else if (type(i, value) != Types.VARCHAR) {
+                text.append(value(value));
+            } else {
+                text.append('\'').append(value(value).replace("'", "''")).append('\'');
+            }
+            last = index + 1;
+        }
+        return text.append(sql, last, sql.length()).toString();
+    }
+
+    // positions of the ? markers outside of quotes and comments
+    private static List<Integer> markers(String sql) {
+        List<Integer> markers = new ArrayList<Integer>();
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char ch = sql.charAt(i);
+            if (quote != 0) {
+                if (ch == quote) {
+                    quote = 0;
+                }
+            } else if (ch == '\'' || ch == '"') {
+                quote = ch;
+            } else if (ch == '-' && sql.startsWith("--", i)) {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? sql.length() : end;
+            } else if (ch == '/' && sql.startsWith("/*", i)) {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? sql.length() : end + 1;
+            } else if (ch == '?') {
+                markers.add(i);
+            }
+        }
+        return markers;
+    }
+
+    private static boolean isInteger(String value) {
+        return value.matches("[-+]?\\d{1,18}");
+    }
+
+    private static boolean isNumber(String value) {
+        return value.matches("[-+]?(\\d+\\.?\\d*|\\.\\d+)([eE][-+]?\\d+)?");
+    }
+
+    private static void read(Statement stmt, boolean isResultSet) throws SQLException {
+        int count = stmt.getUpdateCount();
+        while (isResultSet || count != -1) {
+            if (isResultSet) {
+                ResultSet rset = stmt.getResultSet();
+                try {
+                    ColumnReader[] readers = ColumnReader.create(rset.getMetaData());
+                    while (rset.next()) {
+                        for (ColumnReader reader : readers) {
+                            reader.read(rset);
+                        }
+                    }
+                } finally {
+                    rset.close();
+                }
+            }
+            isResultSet = stmt.getMoreResults();
+            count = stmt.getUpdateCount();
+        }
+    }
+
+    // a public method of the driver's connection interfaces (like oracle.jdbc.OracleConnection), null if none has it
+    private Method method(String name, Class<?>... types) {
+        for (Class<?> type = conn.getClass(); type != null; type = type.getSuperclass()) {
+            for (Class<?> face : type.getInterfaces()) {
+                try {
+                    return face.getMethod(name, types);
+                } catch (NoSuchMethodException ex) {
+                    // next interface
+                }
+            }
+        }
+        return null;
+    }
+
+    private Object invoke(Method method, Object... args) throws SQLException {
+        if (method == null)
+            return null;
+        try {
+            return method.invoke(conn, args);
+        } catch (IllegalAccessException ex) {
+            throw new SQLException(method.getName(), ex);
+        } catch (InvocationTargetException ex) {
+            throw new SQLException(method.getName(), ex.getCause());
+        }
+    }
+}
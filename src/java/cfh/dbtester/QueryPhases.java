@@ -0,0 +1,107 @@
+package cfh.dbtester;
+
+import java.io.PrintStream;
+
+// time of one result of sql: split into the phases of the server, the wire and our own output;
+// next() calls at fetch size boundaries (or slower than STALL without a fetch size) are counted as round trips
+class QueryPhases {
+
+    static final long STALL = 50_000;
+
+    // metric handles of the phases, created once for all results of a run
+    static class Timers {
+
+        private static final String HELP = "Time of a result in one query phase";
+
+        private final Metrics.Metric execute;
+        private final Metrics.Metric metadata;
+        private final Metrics.Metric firstRow;
+        private final Metrics.Metric next;
+        private final Metrics.Metric read;
+        private final Metrics.Metric render;
+        private final Metrics.Metric roundTrips;
+
+        Timers(Metrics metrics) {
+            execute = metrics.timer("phase", HELP, "phase", "execute");
+            metadata = metrics.timer("phase", HELP, "phase", "metadata");
+            firstRow = metrics.timer("phase", HELP, "phase", "first_row");
+            next = metrics.timer("phase", HELP, "phase", "fetch");
+            read = metrics.timer("phase", HELP, "phase", "read");
+            render = metrics.timer("phase", HELP, "phase", "render");
+            roundTrips = metrics.counter("round_trips", "Fetch round trips inferred from next() stalls");
+        }
+    }
+
+    private final long execute;
+    private final int fetchSize;
+    private long metadata = 0;
+    private long firstRow = 0;
+    private long next = 0;
+    private long roundTrips = 0;
+    private long roundTripTime = 0;
+    private long roundTripMax = 0;
+    private long read = 0;
+    private long render = 0;
+    private long calls = 0;
+
+    // <execute> nanoseconds of execute or getMoreResults that produced the result, <fetchSize> of the result set
+    QueryPhases(long execute, int fetchSize) {
+        this.execute = execute;
+        this.fetchSize = fetchSize;
+    }
+
+    void metadata(long nanos) {
+        metadata += nanos;
+    }
+
+    // one rset.next() call, also the last one returning false
+    void next(long nanos) {
+        if (calls++ == 0) {
+            firstRow = nanos;
+            return;
+        }
+        next += nanos;
+        boolean boundary = fetchSize > 0 ? (calls - 1) % fetchSize == 0 : nanos > STALL;
+        if (boundary) {
+            roundTrips += 1;
+            roundTripTime += nanos;
+            roundTripMax = Math.max(roundTripMax, nanos);
+        }
+    }
+
+    void read(long nanos) {
+        read += nanos;
+    }
+
+    void render(long nanos) {
+        render += nanos;
+    }
+
+    long total() {
+        return execute + metadata + firstRow + next + read + render;
+    }
+
+    void print(PrintStream out) {
+        out.printf("phases [ms]: execute %.3f, metadata %.3f, first row %.3f, fetch %.3f, read %.3f, render %.3f, total %.3f%n",
+                execute / 1e6, metadata / 1e6, firstRow / 1e6, next / 1e6, read / 1e6, render / 1e6, total() / 1e6);
+        if (roundTrips > 0) {
+            long others = calls - 1 - roundTrips;
+            out.printf("fetch: %d round trips%s, %.3f ms mean, %.3f ms max; other next() %.3f us mean%n",
+                    roundTrips, fetchSize > 0 ? " (fetch size " + fetchSize + ")" : " (next() over " + STALL / 1000 + " us)",
+                    roundTripTime / 1e6 / roundTrips, roundTripMax / 1e6,
+                    others > 0 ? (next - roundTripTime) / 1e3 / others : 0.0);
+        }
+    }
+
+    void record(Timers timers) {
+        timers.execute.time(execute);
+        timers.metadata.time(metadata);
+        timers.firstRow.time(firstRow);
+        timers.next.time(next);
+        timers.read.time(read);
+        timers.render.time(render);
+        if (roundTrips > 0) {
+            timers.roundTrips.add(roundTrips);
+        }
+    }
+}
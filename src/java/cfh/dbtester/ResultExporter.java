@@ -0,0 +1,368 @@
+package cfh.dbtester;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLXML;
+import java.sql.Types;
+
+// result sets streamed to a CSV or JSON Lines file through one direct buffer, memory use independent of the row count;
+// every result set gets its own file, the second one <name>-2.<ext> and so on, so each CSV has a single header;
+// LOBs are copied from their streams in chunks and freed, arrays are written as JSON arrays
+class ResultExporter {
+
+    private static final int BUFFER = 4 << 20;
+    private static final int CHUNK = 8192;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File base;
+    private final boolean json;
+    private FileChannel channel;
+    private File file;
+    private int results = 0;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder line = new StringBuilder(1024);
+    private final char[] chars = new char[CHUNK];
+    private final byte[] octets = new byte[CHUNK];
+
+    private long rows = 0;
+    private long bytes = 0;
+
+    ResultExporter(File file) throws IOException {
+        String name = file.getName().toLowerCase();
+        json = name.endsWith(".jsonl") || name.endsWith(".json");
+        base = file;
+        this.file = file;
+        channel = open(file);
+    }
+
+    // file of the last exported result set
+    File file() {
+        return file;
+    }
+
+    String format() {
+        return json ? "JSON Lines" : "CSV";
+    }
+
+    long rows() {
+        return rows;
+    }
+
+    long bytes() {
+        return bytes + buffer.position();
+    }
+
+    void export(ResultSet rset) throws SQLException, IOException {
+        if (results > 0) {
+            drain();
+            channel.close();
+            file = numbered(results + 1);
+            channel = open(file);
+        }
+        results += 1;
+        ResultSetMetaData meta = rset.getMetaData();
+        int count = meta.getColumnCount();
+        String[] labels = new String[count];
+        int[] types = new int[count];
+        for (int i = 0; i < count; i++) {
+            labels[i] = meta.getColumnLabel(i+1);
+            types[i] = meta.getColumnType(i+1);
+        }
+        if (!json) {
+            line.setLength(0);
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                csv(labels[i]);
+            }
+            line.append("\r\n");
+            put();
+        }
+        while (rset.next()) {
+            line.setLength(0);
+            if (json) {
+                line.append('{');
+                for (int i = 0; i < count; i++) {
+                    if (i > 0) {
+                        line.append(',');
+                    }
+                    json(labels[i]);
+                    line.append(':');
+                    column(rset, i+1, types[i]);
+                }
+                line.append("}\n");
+            } else {
+                for (int i = 0; i < count; i++) {
+                    if (i > 0) {
+                        line.append(',');
+                    }
+                    column(rset, i+1, types[i]);
+                }
+                line.append("\r\n");
+            }
+            put();
+            rows += 1;
+        }
+    }
+
+    // the getter follows the column type, drivers return locators from getObject whose toString() is no content
+    private void column(ResultSet rset, int column, int type) throws SQLException, IOException {
+        Object value;
+        switch (type) {
+            case Types.CLOB: value = rset.getClob(column); break;
+            case Types.NCLOB: value = rset.getNClob(column); break;
+            case Types.BLOB: value = rset.getBlob(column); break;
+            case Types.SQLXML: value = rset.getSQLXML(column); break;
+            case Types.ARRAY: value = rset.getArray(column); break;
+            default: value = rset.getObject(column); break;
+        }
+        if (value == null) {
+            if (json) {
+                line.append("null");
+            }
+        } else if (value instanceof Clob) {
+            Clob clob = (Clob) value;
+            try {
+                text(clob.getCharacterStream());
+            } finally {
+                clob.free();
+            }
+        } else if (value instanceof Blob) {
+            Blob blob = (Blob) value;
+            try {
+                binary(blob.getBinaryStream());
+            } finally {
+                blob.free();
+            }
+        } else if (value instanceof SQLXML) {
+            SQLXML xml = (SQLXML) value;
+            try {
+                text(xml.getCharacterStream());
+            } finally {
+                xml.free();
+            }
+        } else if (value instanceof Array) {
+            Array array = (Array) value;
+            try {
+                if (json) {
+                    array(array.getArray());
+                } else {
+                    int start = line.length();
+                    array(array.getArray());
+                    String text = line.substring(start);
+                    line.setLength(start);
+                    csv(text);
+                }
+            } finally {
+                array.free();
+            }
+        } else if (json) {
+            element(value);
+        } else if (value instanceof byte[]) {
+            hex((byte[]) value);
+        } else {
+            csv(value.toString());
+        }
+    }
+
+    // one JSON value, also used for array elements
+    private void element(Object value) {
+        if (value == null) {
+            line.append("null");
+        } else if (value instanceof Double && !Double.isFinite((Double) value)
+                || value instanceof Float && !Float.isFinite((Float) value)) {
+            // NaN and Infinity are no JSON numbers
+            line.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            line.append(value);
+        } else if (value instanceof byte[]) {
+            line.append('"');
+            hex((byte[]) value);
+            line.append('"');
+        } else if (value.getClass().isArray()) {
+            array(value);
+        } else {
+            json(value.toString());
+        }
+    }
+
+    // Array.getArray() may return primitive arrays
+    private void array(Object elements) {
+        line.append('[');
+        int length = java.lang.reflect.Array.getLength(elements);
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            element(java.lang.reflect.Array.get(elements, i));
+        }
+        line.append(']');
+    }
+
+    // character LOB copied in chunks, always quoted in CSV so nothing has to be scanned ahead
+    private void text(Reader reader) throws IOException {
+        try {
+            line.append('"');
+            int count;
+            while ((count = reader.read(chars)) != -1) {
+                for (int i = 0; i < count; i++) {
+                    if (json) {
+                        escape(chars[i]);
+                    } else {
+                        if (chars[i] == '"') {
+                            line.append('"');
+                        }
+                        line.append(chars[i]);
+                    }
+                }
+                spill();
+            }
+            line.append('"');
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void binary(InputStream input) throws IOException {
+        try {
+            if (json) {
+                line.append('"');
+            }
+            int count;
+            while ((count = input.read(octets)) != -1) {
+                for (int i = 0; i < count; i++) {
+                    line.append(HEX[(octets[i] >> 4) & 0xF]).append(HEX[octets[i] & 0xF]);
+                }
+                spill();
+            }
+            if (json) {
+                line.append('"');
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    // writes a partial line so a large LOB never sits in the line builder as a whole
+    private void spill() throws IOException {
+        if (line.length() >= BUFFER / 8) {
+            put();
+            line.setLength(0);
+        }
+    }
+
+    void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private File numbered(int number) {
+        String name = base.getName();
+        int dot = name.lastIndexOf('.');
+        String numbered = dot > 0 ? name.substring(0, dot) + "-" + number + name.substring(dot) : name + "-" + number;
+        return new File(base.getParentFile(), numbered);
+    }
+
+    private static FileChannel open(File file) throws IOException {
+        return FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    private void csv(String text) {
+        boolean quote = false;
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char ch = text.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\r' || ch == '\n';
+        }
+        if (!quote) {
+            line.append(text);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == '"') {
+                line.append('"');
+            }
+            line.append(ch);
+        }
+        line.append('"');
+    }
+
+    private void json(String text) {
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            escape(text.charAt(i));
+        }
+        line.append('"');
+    }
+
+    private void escape(char ch) {
+        switch (ch) {
+            case '"': line.append("\\\""); break;
+            case '\\': line.append("\\\\"); break;
+            case '\n': line.append("\\n"); break;
+            case '\r': line.append("\\r"); break;
+            case '\t': line.append("\\t"); break;
+            default:
+                if (ch < 0x20) {
+                    line.append("\\u00").append(HEX[ch >> 4]).append(HEX[ch & 0xF]);
+                } else {
+                    line.append(ch);
+                }
+        }
+    }
+
+    private void hex(byte[] value) {
+        for (byte b : value) {
+            line.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+    }
+
+    private void put() throws IOException {
+        CharBuffer chars = CharBuffer.wrap(line);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                drain();
+            } else {
+                break;
+            }
+        }
+        if (buffer.remaining() < BUFFER / 4) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytes += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
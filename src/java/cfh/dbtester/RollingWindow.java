@@ -0,0 +1,61 @@
+package cfh.dbtester;
+
+import java.util.concurrent.TimeUnit;
+
+// latencies and errors of the last minutes, one histogram per wall clock minute reused in a ring:
+// no allocation after construction, so a watch: can run for weeks with a flat heap
+class RollingWindow {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final Histogram[] slots;
+    private final long[] minutes;
+    private final long[] errors;
+
+    RollingWindow(int minutes) {
+        slots = new Histogram[minutes];
+        this.minutes = new long[minutes];
+        errors = new long[minutes];
+        for (int i = 0; i < minutes; i++) {
+            slots[i] = new Histogram();
+            this.minutes[i] = -1;
+        }
+    }
+
+    // <now> in nanoseconds since the epoch
+    synchronized void record(long nanos, long now) {
+        slots[slot(now)].record(nanos);
+    }
+
+    synchronized void error(long now) {
+        errors[slot(now)] += 1;
+    }
+
+    // the latencies of the last <count> minutes, including the current one, added to <target>; returns the errors
+    synchronized long window(int count, long now, Histogram target) {
+        long minute = now / MINUTE;
+        long errorCount = 0;
+        for (int i = 0; i < slots.length; i++) {
+            if (minutes[i] > minute - count && minutes[i] <= minute) {
+                target.add(slots[i]);
+                errorCount += errors[i];
+            }
+        }
+        return errorCount;
+    }
+
+    static long now() {
+        return TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    }
+
+    private int slot(long now) {
+        long minute = now / MINUTE;
+        int index = (int) (minute % slots.length);
+        if (minutes[index] != minute) {
+            slots[index].reset();
+            errors[index] = 0;
+            minutes[index] = minute;
+        }
+        return index;
+    }
+}
@@ -0,0 +1,141 @@
+package cfh.dbtester;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+// fixed column layout, computed once instead of parsing "%-n.ns|..." for every row
+class RowRenderer {
+
+    private static final char[] NEWLINE = System.lineSeparator().toCharArray();
+
+    private final PrintStream out;
+    private final int[] sizes;
+    private final char separator;
+
+    private final char[] line;
+    private final char[] digits = new char[20];
+    private final CharBuffer chars;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer bytes;
+
+    private int pos;
+    private int column;
+
+    RowRenderer(PrintStream out, int[] sizes, char separator) {
+        this.out = out;
+        this.sizes = sizes.clone();
+        this.separator = separator;
+
+        int length = NEWLINE.length;
+        for (int size : sizes) {
+            length += size + 1;
+        }
+        line = new char[length];
+        chars = CharBuffer.wrap(line);
+        encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        bytes = ByteBuffer.allocate((int) Math.ceil(length * encoder.maxBytesPerChar()));
+    }
+
+    int columns() {
+        return sizes.length;
+    }
+
+    void begin() {
+        pos = 0;
+        column = 0;
+    }
+
+    void column(Object value) {
+        column(value == null ? null : value.toString());
+    }
+
+    void column(String value) {
+        if (value == null) {
+            value = "null";
+        }
+        int size = startColumn();
+        int len = Math.min(size, value.length());
+        value.getChars(0, len, line, pos);
+        pos += len;
+        pad(size - len);
+    }
+
+    void column(CharSequence value) {
+        if (value == null) {
+            column((String) null);
+            return;
+        }
+        int size = startColumn();
+        int len = Math.min(size, value.length());
+        for (int i = 0; i < len; i++) {
+            line[pos++] = value.charAt(i);
+        }
+        pad(size - len);
+    }
+
+    void column(long value) {
+        if (value == Long.MIN_VALUE) {
+            column(Long.toString(value));
+            return;
+        }
+        int start = digits.length;
+        long rest = Math.abs(value);
+        do {
+            digits[--start] = (char) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest != 0);
+        if (value < 0) {
+            digits[--start] = '-';
+        }
+        int size = startColumn();
+        int len = Math.min(size, digits.length - start);
+        System.arraycopy(digits, start, line, pos, len);
+        pos += len;
+        pad(size - len);
+    }
+
+    void end() {
+        while (column < sizes.length) {
+            column("");
+        }
+        System.arraycopy(NEWLINE, 0, line, pos, NEWLINE.length);
+        pos += NEWLINE.length;
+        write();
+    }
+
+    void row(Object... values) {
+        begin();
+        for (Object value : values) {
+            column(value);
+        }
+        end();
+    }
+
+    private int startColumn() {
+        if (column > 0) {
+            line[pos++] = separator;
+        }
+        return sizes[column++];
+    }
+
+    private void pad(int count) {
+        for (int i = 0; i < count; i++) {
+            line[pos++] = ' ';
+        }
+    }
+
+    private void write() {
+        chars.clear().limit(pos);
+        bytes.clear();
+        encoder.reset();
+        encoder.encode(chars, bytes, true);
+        encoder.flush(bytes);
+        out.write(bytes.array(), 0, bytes.position());
+    }
+}
@@ -0,0 +1,365 @@
+package cfh.dbtester;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// tables and already read columns of one URL/user, kept in a binary file between runs;
+// only schemas whose table count and last DDL time (or column hash) changed are read again,
+// the whole snapshot is read again after MAX_AGE in any case
+class SchemaSnapshot {
+
+    private static final int MAGIC = 0x44425453;  // "DBTS"
+    private static final int VERSION = 2;
+    private static final int NULL = Integer.MIN_VALUE;
+    private static final long MAX_AGE = TimeUnit.DAYS.toMillis(1);
+
+    private final String url;
+    private final String user;
+    private final File file;
+
+    private Map<String, long[]> probe = null;
+    private String status = "";
+
+    SchemaSnapshot(String url, String user) {
+        this.url = url;
+        this.user = user;
+        this.file = new File("dbtester-" + hash(url + '\u0000' + user) + ".snapshot");
+    }
+
+    File file() {
+        return file;
+    }
+
+    String status() {
+        return status;
+    }
+
+    // snapshot refreshed against the database, or the full table list if there is no usable snapshot
+    TableIndex load(Connection conn, boolean refresh) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        probe = probe(conn, metaData.getDatabaseProductName());
+        Map<String, long[]> saved = new HashMap<String, long[]>();
+        TableIndex snapshot = null;
+        long created = 0;
+        if (!refresh && file.isFile()) {
+            try {
+                snapshot = new TableIndex();
+                created = read(snapshot, saved);
+            } catch (IOException ex) {
+                status = "unreadable snapshot, " + ex + ", ";
+                snapshot = null;
+            }
+        }
+        if (snapshot != null && System.currentTimeMillis() - created > MAX_AGE) {
+            status = String.format("snapshot from %TF %<TT expired, ", created);
+            snapshot = null;
+        }
+        if (snapshot == null) {
+            status += "snapshot created";
+            return TableIndex.read(metaData);
+        }
+        if (probe == null) {
+            status = String.format("snapshot from %TF %<TT used, no change detection for this database", created);
+            return snapshot;
+        }
+
+        TableIndex index = new TableIndex();
+        List<String> changed = new ArrayList<String>();
+        for (Map.Entry<String, long[]> entry : probe.entrySet()) {
+            long[] old = saved.get(entry.getKey());
+            if (old == null || old[0] != entry.getValue()[0] || old[1] != entry.getValue()[1]) {
+                changed.add(entry.getKey());
+            }
+        }
+        int refreshed = 0;
+        int dropped = 0;
+        for (List<TableIndex.Table> schema : snapshot.schemas()) {
+            TableIndex.Table first = schema.get(0);
+            String owner = owner(first.catalog, first.schema);
+            if (owner != null && !probe.containsKey(owner)) {
+                dropped += 1;
+            } else if (changed.remove(owner)) {
+                refreshed += 1;
+                index.read(metaData, first.catalog, first.schema);
+            } else {
+                for (TableIndex.Table table : schema) {
+                    index.add(table);
+                    List<TableIndex.Column> columns = snapshot.cached(table);
+                    if (columns != null) {
+                        index.cache(table, columns);
+                    }
+                }
+            }
+        }
+        // new schemas
+        boolean schemas = metaData.supportsSchemasInTableDefinitions();
+        for (String owner : changed) {
+            refreshed += 1;
+            index.read(metaData, schemas ? null : owner, schemas ? owner : null);
+        }
+        status = String.format("snapshot from %TF %<TT, %d of %d schemas refreshed, %d dropped",
+                created, refreshed, probe.size(), dropped);
+        return index;
+    }
+
+    void save(TableIndex index) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            writeString(out, url);
+            writeString(out, user);
+            if (probe == null) {
+                out.writeInt(0);
+            } else {
+                out.writeInt(probe.size());
+                for (Map.Entry<String, long[]> entry : probe.entrySet()) {
+                    writeString(out, entry.getKey());
+                    out.writeLong(entry.getValue()[0]);
+                    out.writeLong(entry.getValue()[1]);
+                }
+            }
+            out.writeInt(index.schemas().size());
+            for (List<TableIndex.Table> schema : index.schemas()) {
+                writeString(out, schema.get(0).catalog);
+                writeString(out, schema.get(0).schema);
+                out.writeInt(schema.size());
+                for (TableIndex.Table table : schema) {
+                    writeString(out, table.name);
+                    writeString(out, table.type);
+                    List<TableIndex.Column> columns = index.cached(table);
+                    if (columns == null) {
+                        out.writeInt(-1);
+                        continue;
+                    }
+                    out.writeInt(columns.size());
+                    for (TableIndex.Column column : columns) {
+                        writeString(out, column.name);
+                        out.writeInt(column.dataType);
+                        writeString(out, column.typeName);
+                        out.writeInt(column.size == null ? NULL : column.size);
+                        out.writeInt(column.decimals == null ? NULL : column.decimals);
+                        out.writeBoolean(column.nullable);
+                        writeString(out, column.defaultValue);
+                        out.writeBoolean(column.generated);
+                    }
+                }
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // read into the heap, not mapped: a mapping is only released by GC and would keep save() from replacing the file
+    private long read(TableIndex index, Map<String, long[]> saved) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+                throw new IOException("not a snapshot: " + file);
+            long created = buffer.getLong();
+            String fileUrl = readString(buffer);
+            String fileUser = readString(buffer);
+            if (!url.equals(fileUrl) || !String.valueOf(user).equals(String.valueOf(fileUser)))
+                throw new IOException("snapshot of other URL/user: " + fileUrl);
+            int owners = buffer.getInt();
+            for (int i = 0; i < owners; i++) {
+                String owner = readString(buffer);
+                saved.put(owner, new long[] { buffer.getLong(), buffer.getLong() });
+            }
+            int schemas = buffer.getInt();
+            for (int i = 0; i < schemas; i++) {
+                String catalog = readString(buffer);
+                String schema = readString(buffer);
+                int tables = buffer.getInt();
+                for (int j = 0; j < tables; j++) {
+                    TableIndex.Table table = new TableIndex.Table(catalog, schema, readString(buffer), readString(buffer));
+                    index.add(table);
+                    int count = buffer.getInt();
+                    if (count < 0)
+                        continue;
+                    List<TableIndex.Column> columns = new ArrayList<TableIndex.Column>(count);
+                    for (int k = 0; k < count; k++) {
+                        String name = readString(buffer);
+                        int dataType = buffer.getInt();
+                        String typeName = readString(buffer);
+                        int size = buffer.getInt();
+                        int decimals = buffer.getInt();
+                        boolean nullable = buffer.get() != 0;
+                        String defaultValue = readString(buffer);
+                        boolean generated = buffer.get() != 0;
+                        columns.add(new TableIndex.Column(name, dataType, typeName,
+                                size == NULL ? null : size, decimals == NULL ? null : decimals, nullable, defaultValue, generated));
+                    }
+                    index.cache(table, columns);
+                }
+            }
+            return created;
+        } catch (RuntimeException ex) {
+            throw new IOException("corrupt snapshot: " + file, ex);
+        }
+    }
+
+    // table count and last DDL time per schema (or catalog), null if the database has no query for it;
+    // information_schema has no DDL time (and MySQL's create_time misses ALGORITHM=INSTANT changes), a hash of
+    // every column's name, position, type, length, precision, scale and nullability is used instead: MD5 on
+    // PostgreSQL, CRC32 of the ordered column rows on the client otherwise
+    private static Map<String, long[]> probe(Connection conn, String product) {
+        String query;
+        boolean rows = false;
+        String name = product == null ? "" : product.toLowerCase();
+        if (name.contains("oracle")) {
+            query = "SELECT owner, COUNT(*), MAX(last_ddl_time) FROM all_objects"
+                    + " WHERE object_type IN ('TABLE', 'VIEW') GROUP BY owner";
+        } else if (name.contains("sql server")) {
+            query = "SELECT s.name, COUNT(*), MAX(o.modify_date) FROM sys.objects o"
+                    + " JOIN sys.schemas s ON s.schema_id = o.schema_id WHERE o.type IN ('U', 'V') GROUP BY s.name";
+        } else if (name.contains("postgres")) {
+            query = "SELECT table_schema, COUNT(DISTINCT table_name), MD5(STRING_AGG(table_name || ':' || column_name"
+                    + " || ':' || ordinal_position || ':' || data_type || ':' || COALESCE(character_maximum_length::text, '')"
+                    + " || ':' || COALESCE(numeric_precision::text, '') || ':' || COALESCE(numeric_scale::text, '')"
+                    + " || ':' || is_nullable, ',' ORDER BY table_name, ordinal_position))"
+                    + " FROM information_schema.columns GROUP BY table_schema";
+        } else {
+            query = "SELECT table_schema, table_name, column_name, ordinal_position, data_type,"
+                    + " character_maximum_length, numeric_precision, numeric_scale, is_nullable"
+                    + " FROM information_schema.columns ORDER BY table_schema, table_name, ordinal_position";
+            rows = true;
+        }
+        try {
+            Statement stmt = conn.createStatement();
+            try {
+                ResultSet rset = stmt.executeQuery(query);
+                try {
+                    Map<String, long[]> result = rows ? checksums(rset) : stamps(rset);
+                    // nothing visible, maybe missing privileges: every schema would count as dropped
+                    return result.isEmpty() ? null : result;
+                } finally {
+                    rset.close();
+                }
+            } finally {
+                stmt.close();
+            }
+        } catch (SQLException ex) {
+            return null;
+        }
+    }
+
+    // owner, table count and a DDL time or MD5 hex digest per row
+    private static Map<String, long[]> stamps(ResultSet rset) throws SQLException {
+        int type = rset.getMetaData().getColumnType(3);
+        boolean ddl = type == Types.TIMESTAMP || type == Types.TIMESTAMP_WITH_TIMEZONE || type == Types.DATE;
+        Map<String, long[]> result = new HashMap<String, long[]>();
+        while (rset.next()) {
+            long count = rset.getLong(2);
+            if (ddl) {
+                Timestamp time = rset.getTimestamp(3);
+                result.put(rset.getString(1), new long[] { count, time == null ? 0 : time.getTime() });
+            } else {
+                String digest = rset.getString(3);
+                long stamp = digest == null ? 0 : Long.parseUnsignedLong(digest.substring(0, Math.min(16, digest.length())), 16);
+                result.put(rset.getString(1), new long[] { count, stamp });
+            }
+        }
+        return result;
+    }
+
+    // column rows ordered by owner, table and position: the tables are counted and every value goes into the CRC
+    private static Map<String, long[]> checksums(ResultSet rset) throws SQLException {
+        Map<String, long[]> result = new HashMap<String, long[]>();
+        int columns = rset.getMetaData().getColumnCount();
+        CRC32 crc = new CRC32();
+        long[] current = null;
+        String owner = null;
+        String table = null;
+        while (rset.next()) {
+            String schema = rset.getString(1);
+            if (current == null || !schema.equals(owner)) {
+                if (current != null) {
+                    current[1] = crc.getValue();
+                }
+                crc.reset();
+                current = new long[2];
+                result.put(schema, current);
+                owner = schema;
+                table = null;
+            }
+            String name = rset.getString(2);
+            if (!name.equals(table)) {
+                current[0] += 1;
+                table = name;
+            }
+            for (int i = 2; i <= columns; i++) {
+                String value = rset.getString(i);
+                if (value != null) {
+                    crc.update(value.getBytes(StandardCharsets.UTF_8));
+                }
+                crc.update(0);
+            }
+        }
+        if (current != null) {
+            current[1] = crc.getValue();
+        }
+        return result;
+    }
+
+    private static String owner(String catalog, String schema) {
+        return schema != null ? schema : catalog;
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        if (text == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                builder.append(String.format("%02x", digest[i] & 0xFF));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            return Integer.toHexString(text.hashCode());
+        }
+    }
+}
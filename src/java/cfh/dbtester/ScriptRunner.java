@@ -0,0 +1,137 @@
+package cfh.dbtester;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// runs a script statement by statement, consecutive DML is sent with addBatch/executeBatch
+class ScriptRunner {
+
+    private final Connection conn;
+    private final int batchSize;
+    private final int commitInterval;
+    private final String delimiter;
+
+    private final Histogram batches = new Histogram();
+    private final Histogram singles = new Histogram();
+    private long statements = 0;
+    private long updates = 0;
+    private long commits = 0;
+    private long elapsed = 0;
+    private int pending = 0;
+    private long uncommitted = 0;
+
+    // <delimiter> null for the default of ScriptSplitter
+    ScriptRunner(Connection conn, int batchSize, int commitInterval, String delimiter) {
+        this.conn = conn;
+        this.batchSize = batchSize;
+        this.commitInterval = commitInterval;
+        this.delimiter = delimiter;
+    }
+
+    void run(Reader reader) throws IOException, SQLException {
+        ScriptSplitter splitter = new ScriptSplitter(reader, delimiter);
+        boolean batching = batchSize > 1 && conn.getMetaData().supportsBatchUpdates();
+        boolean autoCommit = conn.getAutoCommit();
+        if (commitInterval > 0) {
+            conn.setAutoCommit(false);
+        }
+        long start = System.nanoTime();
+        Statement stmt = conn.createStatement();
+        try {
+            String sql;
+            while ((sql = splitter.next()) != null) {
+                try {
+                    if (batching && isDML(sql)) {
+                        stmt.addBatch(sql);
+                        pending += 1;
+                        if (pending >= batchSize) {
+                            executeBatch(stmt);
+                        }
+                    } else {
+                        executeBatch(stmt);
+                        long t0 = System.nanoTime();
+                        boolean isResultSet = stmt.execute(sql);
+                        int count = stmt.getUpdateCount();
+                        while (isResultSet || count != -1) {
+                            if (isResultSet) {
+                                stmt.getResultSet().close();
+                            } else {
+                                updates += count;
+                            }
+                            isResultSet = stmt.getMoreResults();
+                            count = stmt.getUpdateCount();
+                        }
+                        singles.record(System.nanoTime() - t0);
+                        statements += 1;
+                        uncommitted += 1;
+                        commitIfDue(false);
+                    }
+                } catch (SQLException ex) {
+                    throw new SQLException("line " + splitter.line() + ": " + ex.getMessage(), ex.getSQLState(), ex.getErrorCode(), ex);
+                }
+            }
+            executeBatch(stmt);
+            commitIfDue(true);
+        } catch (SQLException ex) {
+            if (commitInterval > 0) {
+                conn.rollback();
+            }
+            throw ex;
+        } finally {
+            elapsed = System.nanoTime() - start;
+            stmt.close();
+            if (commitInterval > 0) {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    void report(PrintStream out) {
+        Histogram.printHeader(out);
+        if (batches.count() > 0) {
+            batches.print(out, "batch");
+        }
+        if (singles.count() > 0) {
+            singles.print(out, "statement");
+        }
+        double seconds = elapsed / 1e9;
+        out.printf("%d statements (%d in %d batches of up to %d), %d rows updated, %d commits%n",
+                statements, statements - singles.count(), batches.count(), batchSize, updates, commits);
+        out.printf("%.3f s: %.1f statements/s%n", seconds, seconds > 0 ? statements / seconds : 0);
+    }
+
+    private void executeBatch(Statement stmt) throws SQLException {
+        if (pending == 0)
+            return;
+        long t0 = System.nanoTime();
+        int[] counts = stmt.executeBatch();
+        batches.record(System.nanoTime() - t0);
+        stmt.clearBatch();
+        for (int count : counts) {
+            if (count > 0) {
+                updates += count;
+            }
+        }
+        statements += pending;
+        uncommitted += pending;
+        pending = 0;
+        commitIfDue(false);
+    }
+
+    private void commitIfDue(boolean last) throws SQLException {
+        if (commitInterval > 0 && uncommitted > 0 && (last || uncommitted >= commitInterval)) {
+            conn.commit();
+            commits += 1;
+            uncommitted = 0;
+        }
+    }
+
+    private static boolean isDML(String sql) {
+        String keyword = ScriptSplitter.keyword(sql);
+        return keyword.equals("INSERT") || keyword.equals("UPDATE") || keyword.equals("DELETE") || keyword.equals("MERGE");
+    }
+}
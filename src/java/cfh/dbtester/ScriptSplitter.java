@@ -0,0 +1,196 @@
+package cfh.dbtester;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// statements of a SQL script read one at a time: ';' (or the MySQL DELIMITER) ends a statement outside quotes and comments,
+// a line with only '/' or GO ends PL/SQL blocks and T-SQL batches
+class ScriptSplitter {
+
+    // Oracle and T-SQL bodies, and anonymous blocks other than BEGIN [TRANSACTION|WORK] starting a transaction
+    private static final Pattern BLOCK = Pattern.compile(
+            "(?:CREATE\\s+(?:OR\\s+(?:REPLACE|ALTER)\\s+)?(?:EDITIONABLE\\s+|NONEDITIONABLE\\s+)?"
+            + "(?:PROCEDURE|FUNCTION|PACKAGE|TRIGGER|TYPE\\s+BODY)|DECLARE\\s+[^@\\s]"
+            + "|BEGIN\\b(?!\\s*$|\\s+(?:TRANSACTION|TRAN|WORK|ISOLATION|DEFERRED|IMMEDIATE|EXCLUSIVE)\\b)).*",
+            Pattern.DOTALL);
+    // bodies quoted as a string (PostgreSQL $$ ... $$ or '...'), enum types and trigger calls end with ';'
+    private static final Pattern NO_BLOCK = Pattern.compile(
+            "\\bAS\\s*(?:\\$[A-Za-z_]*\\$|')|\\bAS\\s+ENUM\\b|\\bEXECUTE\\s+(?:FUNCTION|PROCEDURE)\\b",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern DOLLAR = Pattern.compile("\\$[A-Za-z_]*\\$");
+
+    private enum State { NORMAL, SINGLE, DOUBLE, BLOCK_COMMENT, DOLLAR }
+
+    private final BufferedReader reader;
+    private final StringBuilder statement = new StringBuilder();
+    private final Deque<String> pending = new ArrayDeque<String>();
+    private final Deque<Integer> pendingLines = new ArrayDeque<Integer>();
+    private final boolean lines;
+    private String delimiter;
+    private State state = State.NORMAL;
+    private String dollarTag = null;
+    private int line = 0;
+    private int startLine = 0;
+
+    ScriptSplitter(Reader reader) {
+        this(reader, null);
+    }
+
+    // <delimiter> null for ';' with blocks detected, '/' or GO for statements ended only by such lines
+    ScriptSplitter(Reader reader, String delimiter) {
+        this.reader = new BufferedReader(reader, 1 << 16);
+        this.lines = delimiter != null && (delimiter.equals("/") || delimiter.equalsIgnoreCase("GO"));
+        this.delimiter = delimiter == null || lines ? ";" : delimiter;
+    }
+
+    // line number where the last returned statement started
+    int line() {
+        return startLine;
+    }
+
+    String next() throws IOException {
+        String text;
+        while (pending.isEmpty() && (text = reader.readLine()) != null) {
+            line += 1;
+            if (state == State.NORMAL) {
+                String trimmed = text.trim();
+                if (trimmed.equals("/") || trimmed.equalsIgnoreCase("GO")) {
+                    take();
+                    continue;
+                }
+                if (!lines && isBlank() && trimmed.toUpperCase(Locale.ROOT).startsWith("DELIMITER ")) {
+                    delimiter = trimmed.substring(10).trim();
+                    continue;
+                }
+            }
+            if (isBlank()) {
+                startLine = line;
+            }
+            scan(text);
+        }
+        if (pending.isEmpty()) {
+            state = State.NORMAL;
+            take();
+        }
+        if (pending.isEmpty())
+            return null;
+        startLine = pendingLines.poll();
+        return pending.poll();
+    }
+
+    private void scan(String text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char ch = text.charAt(i);
+            switch (state) {
+                case SINGLE:
+                    if (ch == '\'') state = State.NORMAL;
+                    break;
+                case DOUBLE:
+                    if (ch == '"') state = State.NORMAL;
+                    break;
+                case BLOCK_COMMENT:
+                    if (ch == '*' && i + 1 < length && text.charAt(i + 1) == '/') {
+                        statement.append(ch);
+                        ch = text.charAt(++i);
+                        state = State.NORMAL;
+                    }
+                    break;
+                case DOLLAR:
+                    if (text.startsWith(dollarTag, i)) {
+                        statement.append(dollarTag, 0, dollarTag.length() - 1);
+                        i += dollarTag.length() - 1;
+                        ch = '$';
+                        state = State.NORMAL;
+                    }
+                    break;
+                case NORMAL:
+                    if (!lines && text.startsWith(delimiter, i) && !isBlock()) {
+                        take();
+                        startLine = line;
+                        i += delimiter.length() - 1;
+                        continue;
+                    }
+                    if (ch == '\'') {
+                        state = State.SINGLE;
+                    } else if (ch == '"') {
+                        state = State.DOUBLE;
+                    } else if (ch == '-' && i + 1 < length && text.charAt(i + 1) == '-') {
+                        statement.append(text, i, length);
+                        i = length;
+                        continue;
+                    } else if (ch == '/' && i + 1 < length && text.charAt(i + 1) == '*') {
+                        statement.append(ch);
+                        ch = text.charAt(++i);
+                        state = State.BLOCK_COMMENT;
+                    } else if (ch == '$') {
+                        Matcher matcher = DOLLAR.matcher(text).region(i, length);
+                        if (matcher.lookingAt()) {
+                            dollarTag = matcher.group();
+                            statement.append(dollarTag, 0, dollarTag.length() - 1);
+                            i += dollarTag.length() - 1;
+                            ch = '$';
+                            state = State.DOLLAR;
+                        }
+                    }
+                    break;
+            }
+            statement.append(ch);
+        }
+        statement.append('\n');
+    }
+
+    // PL/SQL and similar blocks contain ';' and end with a '/' or GO line, unless a DELIMITER was set
+    private boolean isBlock() {
+        return delimiter.equals(";") && BLOCK.matcher(leading(statement)).matches() && !NO_BLOCK.matcher(statement).find();
+    }
+
+    // first word of a statement, after comments
+    static String keyword(CharSequence text) {
+        String leading = leading(text);
+        int end = 0;
+        while (end < leading.length() && Character.isLetter(leading.charAt(end))) end += 1;
+        return leading.substring(0, end);
+    }
+
+    private static String leading(CharSequence text) {
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            char ch = text.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                i += 1;
+            } else if (ch == '-' && i + 1 < length && text.charAt(i + 1) == '-') {
+                while (i < length && text.charAt(i) != '\n') i += 1;
+            } else if (ch == '/' && i + 1 < length && text.charAt(i + 1) == '*') {
+                int end = text.toString().indexOf("*/", i + 2);
+                i = end == -1 ? length : end + 2;
+            } else {
+                break;
+            }
+        }
+        return text.subSequence(i, Math.min(length, i + 80)).toString().toUpperCase(Locale.ROOT);
+    }
+
+    private boolean isBlank() {
+        for (int i = 0; i < statement.length(); i++) {
+            if (!Character.isWhitespace(statement.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+
+    private void take() {
+        if (!leading(statement).isEmpty()) {
+            pending.add(statement.toString().trim());
+            pendingLines.add(startLine);
+        }
+        statement.setLength(0);
+    }
+}
@@ -0,0 +1,305 @@
+package cfh.dbtester;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// many hosts/ports probed at once: TCP connects multiplexed on one selector, pings on a thread pool
+class Sweep {
+
+    private static final int MAX_HOSTS = 1 << 16;
+    private static final int MAX_PENDING = 1000;
+    private static final int PING_THREADS = 64;
+
+    private static final String FORMAT = "%-40.40s %-12.12s %10s%n";
+
+    static class Result {
+
+        final InetAddress address;
+        final int port;
+        String status;
+        long nanos = -1;
+
+        Result(InetAddress address, int port) {
+            this.address = address;
+            this.port = port;
+        }
+
+        String endpoint() {
+            String host = address.getHostAddress();
+            return port < 0 ? host : host + ":" + port;
+        }
+    }
+
+    private final List<Result> results = new ArrayList<Result>();
+    private long elapsed;
+
+    // comma separated host names, addresses and IPv4 CIDR ranges
+    static List<InetAddress> hosts(String spec) throws UnknownHostException {
+        List<InetAddress> hosts = new ArrayList<InetAddress>();
+        for (String token : spec.split(",")) {
+            token = token.trim();
+            if (token.isEmpty())
+                continue;
+            int slash = token.indexOf('/');
+            if (slash == -1) {
+                hosts.add(InetAddress.getByName(token));
+                continue;
+            }
+            InetAddress base = InetAddress.getByName(token.substring(0, slash));
+            int prefix;
+            try {
+                prefix = Integer.parseInt(token.substring(slash + 1));
+            } catch (NumberFormatException ex) {
+                throw new UnknownHostException("invalid prefix: " + token);
+            }
+            if (!(base instanceof Inet4Address) || prefix < 0 || prefix > 32)
+                throw new UnknownHostException("only IPv4 ranges supported: " + token);
+            byte[] bytes = base.getAddress();
+            int address = ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+            long size = 1L << (32 - prefix);
+            if (size > MAX_HOSTS)
+                throw new UnknownHostException("range too large: " + token);
+            int first = prefix == 0 ? 0 : address & (int) (0xFFFFFFFFL << (32 - prefix));
+            // network and broadcast addresses are skipped, except for /31 and /32
+            long start = size > 2 ? 1 : 0;
+            long end = size > 2 ? size - 1 : size;
+            for (long i = start; i < end; i++) {
+                int value = first + (int) i;
+                hosts.add(InetAddress.getByAddress(new byte[] {
+                        (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value }));
+            }
+        }
+        return hosts;
+    }
+
+    // comma separated ports and port ranges like 1521,5432-5434
+    static List<Integer> ports(String spec) {
+        List<Integer> ports = new ArrayList<Integer>();
+        for (String token : spec.split(",")) {
+            token = token.trim();
+            if (token.isEmpty())
+                continue;
+            int dash = token.indexOf('-');
+            if (dash == -1) {
+                ports.add(port(token));
+            } else {
+                int first = port(token.substring(0, dash));
+                int last = port(token.substring(dash + 1));
+                for (int port = first; port <= last; port++) {
+                    ports.add(port);
+                }
+            }
+        }
+        return ports;
+    }
+
+    private static int port(String text) {
+        int port = Integer.parseInt(text.trim());
+        if (port < 0 || port > 0xFFFF)
+            throw new NumberFormatException("invalid port: " + text);
+        return port;
+    }
+
+    void tcp(List<InetAddress> hosts, List<Integer> ports, int timeout) throws IOException {
+        Deque<Result> waiting = new ArrayDeque<Result>();
+        for (InetAddress host : hosts) {
+            for (int port : ports) {
+                Result result = new Result(host, port);
+                results.add(result);
+                waiting.add(result);
+            }
+        }
+        long limit = TimeUnit.MILLISECONDS.toNanos(timeout);
+        long start = System.nanoTime();
+        Selector selector = Selector.open();
+        int pending = 0;
+        try {
+            while (!waiting.isEmpty() || pending > 0) {
+                while (!waiting.isEmpty() && pending < MAX_PENDING) {
+                    if (connect(selector, waiting.poll())) {
+                        pending += 1;
+                    }
+                }
+                selector.select(Math.max(1, timeout / 10));
+                long now = System.nanoTime();
+                for (Iterator<SelectionKey> iter = selector.selectedKeys().iterator(); iter.hasNext(); ) {
+                    SelectionKey key = iter.next();
+                    iter.remove();
+                    Probe probe = (Probe) key.attachment();
+                    try {
+                        if (((SocketChannel) key.channel()).finishConnect()) {
+                            probe.result.status = "open";
+                            probe.result.nanos = now - probe.start;
+                            close(key);
+                            pending -= 1;
+                        }
+                    } catch (IOException ex) {
+                        probe.result.status = status(ex);
+                        probe.result.nanos = now - probe.start;
+                        close(key);
+                        pending -= 1;
+                    }
+                }
+                for (SelectionKey key : selector.keys()) {
+                    Probe probe = (Probe) key.attachment();
+                    if (key.isValid() && now - probe.start > limit) {
+                        probe.result.status = "timeout";
+                        close(key);
+                        pending -= 1;
+                    }
+                }
+            }
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                close(key);
+            }
+            selector.close();
+        }
+        elapsed = System.nanoTime() - start;
+    }
+
+    void ping(List<InetAddress> hosts, final int timeout) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(hosts.size(), PING_THREADS)));
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (InetAddress host : hosts) {
+                final Result result = new Result(host, -1);
+                results.add(result);
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        long t0 = System.nanoTime();
+                        try {
+                            boolean reachable = result.address.isReachable(timeout);
+                            result.status = reachable ? "OK" : "unreachable";
+                        } catch (IOException ex) {
+                            result.status = status(ex);
+                        }
+                        result.nanos = System.nanoTime() - t0;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    // status stays null
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        elapsed = System.nanoTime() - start;
+    }
+
+    List<Result> results() {
+        return results;
+    }
+
+    void report(PrintStream out, String success) {
+        List<Result> sorted = new ArrayList<Result>(results);
+        Collections.sort(sorted, new Comparator<Result>() {
+            @Override
+            public int compare(Result r1, Result r2) {
+                byte[] a1 = r1.address.getAddress();
+                byte[] a2 = r2.address.getAddress();
+                if (a1.length != a2.length)
+                    return a1.length - a2.length;
+                for (int i = 0; i < a1.length; i++) {
+                    if (a1[i] != a2[i])
+                        return (a1[i] & 0xFF) - (a2[i] & 0xFF);
+                }
+                return r1.port - r2.port;
+            }
+        });
+        out.printf(FORMAT, "ENDPOINT", "STATUS", "MS");
+        Histogram latency = new Histogram();
+        for (Result result : sorted) {
+            out.printf(FORMAT, result.endpoint(), result.status,
+                    result.nanos < 0 ? "" : String.format("%.3f", result.nanos / 1e6));
+            if (success.equals(result.status)) {
+                latency.record(result.nanos);
+            }
+        }
+        out.printf("%d of %d %s in %.3f s%n", latency.count(), results.size(), success, elapsed / 1e9);
+        if (latency.count() > 0) {
+            Histogram.printHeader(out);
+            latency.print(out, success);
+        }
+    }
+
+    // true if the connect is pending on the selector
+    private static boolean connect(Selector selector, Result result) {
+        long start = System.nanoTime();
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            if (channel.connect(new InetSocketAddress(result.address, result.port))) {
+                result.status = "open";
+                result.nanos = System.nanoTime() - start;
+                channel.close();
+            } else {
+                channel.register(selector, SelectionKey.OP_CONNECT, new Probe(result, start));
+                return true;
+            }
+        } catch (IOException ex) {
+            result.status = status(ex);
+            result.nanos = System.nanoTime() - start;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ex) {
+            // nothing to report, result is already set
+        }
+    }
+
+    private static String status(IOException ex) {
+        String message = ex.getMessage();
+        if (message == null)
+            return ex.getClass().getSimpleName();
+        return message.toLowerCase().contains("refused") ? "refused" : message;
+    }
+
+    private static class Probe {
+
+        private final Result result;
+        private final long start;
+
+        Probe(Result result, long start) {
+            this.result = result;
+            this.start = start;
+        }
+    }
+}
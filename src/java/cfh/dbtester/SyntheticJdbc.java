@@ -0,0 +1,272 @@
+package cfh.dbtester;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.DatabaseMetaData;
+import java.sql.JDBCType;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Locale;
+
+// in-memory result sets and metadata built with dynamic proxies, for measuring the code around JDBC without a database;
+// only the getters used by DBTester are implemented
+class SyntheticJdbc {
+
+    private static final String[] TABLE_LABELS = { "TABLE_CAT", "TABLE_SCHEM", "TABLE_NAME", "TABLE_TYPE" };
+    private static final int[] TABLE_TYPES = { Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR };
+    private static final String[] SCHEMA_LABELS = { "TABLE_SCHEM", "TABLE_CATALOG" };
+    private static final int[] SCHEMA_TYPES = { Types.VARCHAR, Types.VARCHAR };
+    private static final String[] COLUMN_LABELS = { "TABLE_CAT", "TABLE_SCHEM", "TABLE_NAME", "COLUMN_NAME",
+            "DATA_TYPE", "TYPE_NAME", "COLUMN_SIZE", "DECIMAL_DIGITS", "NULLABLE", "COLUMN_DEF",
+            "IS_AUTOINCREMENT", "IS_GENERATEDCOLUMN" };
+    private static final int[] COLUMN_TYPES = { Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+            Types.INTEGER, Types.VARCHAR, Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.VARCHAR,
+            Types.VARCHAR, Types.VARCHAR };
+
+    private SyntheticJdbc() {
+    }
+
+    static final String[] ROW_LABELS = { "ID", "COUNTER", "AMOUNT", "NAME", "PRICE", "CREATED" };
+    static final int[] ROW_TYPES = { Types.INTEGER, Types.BIGINT, Types.DOUBLE, Types.VARCHAR, Types.DECIMAL, Types.TIMESTAMP };
+
+    private static final long BASE = 1500000000000L;
+
+    // <rows> rows of an INTEGER, BIGINT, DOUBLE, VARCHAR, DECIMAL and TIMESTAMP column
+    static List<Object[]> rowData(int rows) {
+        List<Object[]> data = new ArrayList<Object[]>(rows);
+        for (int i = 0; i < rows; i++) {
+            data.add(row(ROW_TYPES, i));
+        }
+        return data;
+    }
+
+    static Object[] row(int[] types, long row) {
+        Object[] values = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            values[i] = value(types[i], row, i);
+        }
+        return values;
+    }
+
+    // value of a column derived from the row number
+    static Object value(int type, long row, int column) {
+        switch (type) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return (int) (row % Integer.MAX_VALUE);
+            case Types.BIGINT:
+                return row * 1000003L;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return row * 0.25;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return BigDecimal.valueOf(row * 7L, 2);
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return row % 2 == 0;
+            case Types.DATE:
+                return new java.sql.Date(BASE + (row % 36500) * 86400000L);
+            case Types.TIMESTAMP:
+                return new java.sql.Timestamp(BASE + row * 1000L);
+            default:
+                return "name " + row + (column > 0 ? "/" + column : "");
+        }
+    }
+
+    static ResultSet rows(List<Object[]> data) {
+        return resultSet(ROW_LABELS, ROW_TYPES, data);
+    }
+
+    // metadata of <schemas> schemas with <tables> tables of <columns> columns each
+    static DatabaseMetaData metaData(int schemas, int tables, int columns) {
+        final Map<String, List<Object[]>> tableRows = new LinkedHashMap<String, List<Object[]>>();
+        final Map<String, List<Object[]>> columnRows = new LinkedHashMap<String, List<Object[]>>();
+        final List<Object[]> schemaRows = new ArrayList<Object[]>();
+        for (int s = 0; s < schemas; s++) {
+            String schema = "SCHEMA" + s;
+            schemaRows.add(new Object[] { schema, null });
+            List<Object[]> schemaTables = new ArrayList<Object[]>(tables);
+            List<Object[]> schemaColumns = new ArrayList<Object[]>(tables * columns);
+            for (int t = 0; t < tables; t++) {
+                String table = "TABLE" + t;
+                schemaTables.add(new Object[] { null, schema, table, "TABLE" });
+                for (int c = 0; c < columns; c++) {
+                    schemaColumns.add(new Object[] { null, schema, table, "COLUMN" + c,
+                            c % 2 == 0 ? Types.INTEGER : Types.VARCHAR, c % 2 == 0 ? "INTEGER" : "VARCHAR",
+                            c % 2 == 0 ? 10 : 40, c % 2 == 0 ? 0 : null, DatabaseMetaData.columnNullable, null,
+                            c == 0 ? "YES" : "NO", "NO" });
+                }
+            }
+            tableRows.put(schema, schemaTables);
+            columnRows.put(schema, schemaColumns);
+        }
+        return (DatabaseMetaData) Proxy.newProxyInstance(SyntheticJdbc.class.getClassLoader(),
+                new Class<?>[] { DatabaseMetaData.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if (name.equals("getSearchStringEscape"))
+                            return "\\";
+                        if (name.equals("getIdentifierQuoteString"))
+                            return "\"";
+                        if (name.equals("getDatabaseProductName") || name.equals("getDriverName"))
+                            return "DBTester synthetic";
+                        if (name.equals("getDatabaseProductVersion") || name.equals("getDriverVersion"))
+                            return "1.0";
+                        if (name.equals("getDatabaseMajorVersion") || name.equals("getDriverMajorVersion"))
+                            return 1;
+                        if (name.equals("getDatabaseMinorVersion") || name.equals("getDriverMinorVersion"))
+                            return 0;
+                        if (name.equals("getJDBCMajorVersion"))
+                            return 4;
+                        if (name.equals("getJDBCMinorVersion"))
+                            return 2;
+                        if (name.equals("getMaxConnections"))
+                            return 0;
+                        if (name.equals("getCatalogTerm"))
+                            return "catalog";
+                        if (name.equals("getSchemaTerm"))
+                            return "schema";
+                        if (name.equals("getProcedureTerm"))
+                            return "procedure";
+                        if (name.equals("supportsBatchUpdates") || name.equals("supportsTransactions"))
+                            return true;
+                        if (name.equals("getCatalogs"))
+                            return resultSet(new String[] { "TABLE_CAT" }, new int[] { Types.VARCHAR }, new ArrayList<Object[]>());
+                        if (name.equals("getSchemas") && args == null)
+                            return resultSet(SCHEMA_LABELS, SCHEMA_TYPES, schemaRows);
+                        if (name.equals("getTables"))
+                            return resultSet(TABLE_LABELS, TABLE_TYPES, select(tableRows, (String) args[1], (String) args[2], null));
+                        if (name.equals("getColumns"))
+                            return resultSet(COLUMN_LABELS, COLUMN_TYPES, select(columnRows, (String) args[1], (String) args[2], (String) args[3]));
+                        return unsupported(proxy, method, args);
+                    }
+                });
+    }
+
+    static ResultSet resultSet(final String[] labels, final int[] types, final List<Object[]> data) {
+        final ResultSetMetaData meta = (ResultSetMetaData) Proxy.newProxyInstance(SyntheticJdbc.class.getClassLoader(),
+                new Class<?>[] { ResultSetMetaData.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if (name.equals("getColumnCount"))
+                            return labels.length;
+                        if (args == null || !(args[0] instanceof Integer))
+                            return unsupported(proxy, method, args);
+                        int column = (Integer) args[0] - 1;
+                        if (name.equals("getColumnLabel") || name.equals("getColumnName"))
+                            return labels[column];
+                        if (name.equals("getColumnType"))
+                            return types[column];
+                        if (name.equals("getColumnTypeName"))
+                            return JDBCType.valueOf(types[column]).getName();
+                        if (name.equals("getPrecision"))
+                            return types[column] == Types.VARCHAR ? 40 : types[column] == Types.DECIMAL ? 12 : 0;
+                        if (name.equals("isSigned"))
+                            return types[column] != Types.VARCHAR;
+                        if (name.equals("getScale"))
+                            return types[column] == Types.DECIMAL ? 2 : 0;
+                        if (name.equals("getColumnDisplaySize"))
+                            return types[column] == Types.VARCHAR ? 40 : 20;
+                        if (name.equals("getCatalogName") || name.equals("getSchemaName") || name.equals("getTableName"))
+                            return "";
+                        return unsupported(proxy, method, args);
+                    }
+                });
+        return (ResultSet) Proxy.newProxyInstance(SyntheticJdbc.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+                    private int row = -1;
+                    private boolean wasNull = false;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if (name.equals("next")) {
+                            // the row is taken from the list here, like a driver reading the next block
+                            if (++row >= data.size())
+                                return false;
+                            data.get(row);
+                            return true;
+                        }
+                        if (name.equals("close") || name.equals("setFetchSize"))
+                            return null;
+                        if (name.equals("getMetaData"))
+                            return meta;
+                        if (name.equals("wasNull"))
+                            return wasNull;
+                        if (name.equals("findColumn"))
+                            return column(args[0]) + 1;
+                        if (!name.startsWith("get") || args == null || args.length != 1)
+                            return unsupported(proxy, method, args);
+                        Object value = data.get(row)[column(args[0])];
+                        wasNull = value == null;
+                        Class<?> type = method.getReturnType();
+                        if (type == String.class)
+                            return value == null ? null : value.toString();
+                        if (type == int.class)
+                            return value == null ? 0 : ((Number) value).intValue();
+                        if (type == long.class)
+                            return value == null ? 0L : ((Number) value).longValue();
+                        if (type == double.class)
+                            return value == null ? 0.0 : ((Number) value).doubleValue();
+                        if (type == boolean.class)
+                            return value != null && Boolean.parseBoolean(value.toString());
+                        return value;
+                    }
+
+                    private int column(Object key) throws SQLException {
+                        if (key instanceof Integer)
+                            return (Integer) key - 1;
+                        for (int i = 0; i < labels.length; i++) {
+                            if (labels[i].equalsIgnoreCase((String) key))
+                                return i;
+                        }
+                        throw new SQLException("unknown column " + key);
+                    }
+                });
+    }
+
+    private static List<Object[]> select(Map<String, List<Object[]>> schemas, String schema, String table, String column) {
+        List<Object[]> selected = new ArrayList<Object[]>();
+        for (Map.Entry<String, List<Object[]>> entry : schemas.entrySet()) {
+            if (!matches(schema, entry.getKey()))
+                continue;
+            for (Object[] row : entry.getValue()) {
+                if (matches(table, (String) row[2]) && (column == null || matches(column, (String) row[3]))) {
+                    selected.add(row);
+                }
+            }
+        }
+        return selected;
+    }
+
+    // only '%' alone is a wildcard here, escaped names are compared without the escapes
+    private static boolean matches(String pattern, String value) {
+        if (pattern == null || pattern.equals("%"))
+            return true;
+        return pattern.replace("\\", "").toUpperCase(Locale.ROOT).equals(value.toUpperCase(Locale.ROOT));
+    }
+
+    private static Object unsupported(Object proxy, Method method, Object[] args) throws SQLException {
+        if (method.getName().equals("toString"))
+            return "SyntheticJdbc";
+        if (method.getName().equals("hashCode"))
+            return System.identityHashCode(proxy);
+        if (method.getName().equals("equals"))
+            return proxy == args[0];
+        throw new SQLFeatureNotSupportedException(method.getName());
+    }
+}
@@ -0,0 +1,235 @@
+package cfh.dbtester;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// table list read once, indexed case-insensitively by name and by catalog/schema
+class TableIndex {
+
+    // a whole schema is read with one getColumns call if at most this many tables per wanted table are in it
+    private static final int BATCH_RATIO = 8;
+
+    static class Table {
+
+        final String catalog;
+        final String schema;
+        final String name;
+        final String type;
+
+        Table(String catalog, String schema, String name, String type) {
+            this.catalog = catalog;
+            this.schema = schema;
+            this.name = name;
+            this.type = type;
+        }
+    }
+
+    static class Column {
+
+        final String name;
+        final int dataType;
+        final String typeName;
+        final Integer size;
+        final Integer decimals;
+        final boolean nullable;
+        final String defaultValue;
+        final boolean generated;
+
+        Column(String name, int dataType, String typeName, Integer size, Integer decimals, boolean nullable,
+                String defaultValue, boolean generated) {
+            this.name = name;
+            this.dataType = dataType;
+            this.typeName = typeName;
+            this.size = size;
+            this.decimals = decimals;
+            this.nullable = nullable;
+            this.defaultValue = defaultValue;
+            this.generated = generated;
+        }
+    }
+
+    private final List<Table> tables = new ArrayList<Table>();
+    private final Map<String, List<Table>> byName = new HashMap<String, List<Table>>();
+    private final Map<String, List<Table>> bySchema = new LinkedHashMap<String, List<Table>>();
+    private final Map<Table, List<Column>> cache = new HashMap<Table, List<Column>>();
+
+    static TableIndex read(DatabaseMetaData metaData) throws SQLException {
+        TableIndex index = new TableIndex();
+        index.read(metaData, null, null);
+        return index;
+    }
+
+    // adds the tables of one catalog/schema, given as exact names
+    void read(DatabaseMetaData metaData, String catalog, String schema) throws SQLException {
+        String escape = metaData.getSearchStringEscape();
+        ResultSet rset = metaData.getTables(catalog, escape(schema, escape), "%", null);
+        try {
+            while (rset.next()) {
+                add(new Table(
+                        rset.getString("TABLE_CAT"),
+                        rset.getString("TABLE_SCHEM"),
+                        rset.getString("TABLE_NAME"),
+                        rset.getString("TABLE_TYPE")));
+            }
+        } finally {
+            rset.close();
+        }
+    }
+
+    void add(Table table) {
+        tables.add(table);
+        List<Table> named = byName.get(key(table.name));
+        if (named == null) {
+            named = new ArrayList<Table>(1);
+            byName.put(key(table.name), named);
+        }
+        named.add(table);
+        String schemaKey = schemaKey(table.catalog, table.schema);
+        List<Table> schema = bySchema.get(schemaKey);
+        if (schema == null) {
+            schema = new ArrayList<Table>();
+            bySchema.put(schemaKey, schema);
+        }
+        schema.add(table);
+    }
+
+    List<Table> tables() {
+        return Collections.unmodifiableList(tables);
+    }
+
+    List<Table> find(String name) {
+        List<Table> named = byName.get(key(name));
+        return named == null ? Collections.<Table>emptyList() : named;
+    }
+
+    Collection<List<Table>> schemas() {
+        return Collections.unmodifiableCollection(bySchema.values());
+    }
+
+    List<Column> cached(Table table) {
+        return cache.get(table);
+    }
+
+    void cache(Table table, List<Column> columns) {
+        cache.put(table, columns);
+    }
+
+    List<Table> schema(String catalog, String schema) {
+        List<Table> list = bySchema.get(schemaKey(catalog, schema));
+        return list == null ? Collections.<Table>emptyList() : list;
+    }
+
+    // columns of the wanted tables, reading a schema in one call when the wanted tables are a large part of it
+    Map<Table, List<Column>> columns(DatabaseMetaData metaData, List<Table> wanted) throws SQLException {
+        Map<Table, List<Column>> result = new HashMap<Table, List<Column>>();
+        Map<String, List<Table>> groups = new LinkedHashMap<String, List<Table>>();
+        for (Table table : wanted) {
+            List<Column> known = cache.get(table);
+            if (known != null) {
+                result.put(table, known);
+                continue;
+            }
+            String schemaKey = schemaKey(table.catalog, table.schema);
+            List<Table> group = groups.get(schemaKey);
+            if (group == null) {
+                group = new ArrayList<Table>();
+                groups.put(schemaKey, group);
+            }
+            if (!group.contains(table)) {
+                group.add(table);
+                result.put(table, new ArrayList<Column>());
+            }
+        }
+        String escape = metaData.getSearchStringEscape();
+        for (List<Table> group : groups.values()) {
+            Table first = group.get(0);
+            List<Table> schema = schema(first.catalog, first.schema);
+            if (group.size() > 1 && schema.size() <= group.size() * BATCH_RATIO) {
+                Map<String, Table> names = new HashMap<String, Table>();
+                for (Table table : group) {
+                    names.put(table.name, table);
+                }
+                readColumns(metaData, first.catalog, escape(first.schema, escape), "%", names, result);
+            } else {
+                for (Table table : group) {
+                    Map<String, Table> names = Collections.singletonMap(table.name, table);
+                    readColumns(metaData, table.catalog, escape(table.schema, escape), escape(table.name, escape), names, result);
+                }
+            }
+            for (Table table : group) {
+                cache.put(table, result.get(table));
+            }
+        }
+        return result;
+    }
+
+    private static void readColumns(DatabaseMetaData metaData, String catalog, String schema, String table,
+            Map<String, Table> names, Map<Table, List<Column>> result) throws SQLException {
+        ResultSet rset = metaData.getColumns(catalog, schema, table, "%");
+        try {
+            while (rset.next()) {
+                Table owner = names.get(rset.getString("TABLE_NAME"));
+                if (owner == null)
+                    continue;
+                String name = rset.getString("COLUMN_NAME");
+                int dataType = rset.getInt("DATA_TYPE");
+                String typeName = rset.getString("TYPE_NAME");
+                Integer size = rset.getInt("COLUMN_SIZE");
+                if (rset.wasNull()) {
+                    size = null;
+                }
+                Integer decimals = rset.getInt("DECIMAL_DIGITS");
+                if (rset.wasNull()) {
+                    decimals = null;
+                }
+                boolean nullable = rset.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls;
+                String defaultValue = rset.getString("COLUMN_DEF");
+                boolean generated = isYes(rset, "IS_AUTOINCREMENT") || isYes(rset, "IS_GENERATEDCOLUMN");
+                result.get(owner).add(new Column(name, dataType, typeName, size, decimals, nullable, defaultValue, generated));
+            }
+        } finally {
+            rset.close();
+        }
+    }
+
+    // JDBC 4.1 columns, missing in older drivers
+    private static boolean isYes(ResultSet rset, String column) {
+        try {
+            return "YES".equalsIgnoreCase(rset.getString(column));
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    // exact names as search patterns: '_' and '%' must not match other tables
+    private static String escape(String name, String escape) {
+        if (name == null || escape == null || escape.isEmpty())
+            return name;
+        StringBuilder builder = new StringBuilder(name.length() + 4);
+        for (int i = 0; i < name.length(); i++) {
+            char ch = name.charAt(i);
+            if (ch == '_' || ch == '%' || escape.indexOf(ch) != -1) {
+                builder.append(escape);
+            }
+            builder.append(ch);
+        }
+        return builder.toString();
+    }
+
+    private static String key(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+
+    private static String schemaKey(String catalog, String schema) {
+        return (catalog == null ? "" : catalog) + '\u0000' + (schema == null ? "" : schema);
+    }
+}
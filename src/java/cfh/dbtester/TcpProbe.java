@@ -0,0 +1,112 @@
+package cfh.dbtester;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+// repeated connects, small request/response round trips and a bulk transfer against one endpoint
+class TcpProbe {
+
+    private static final int MESSAGE = 64;
+    private static final int CHUNK = 1 << 16;
+
+    private final InetSocketAddress address;
+    private final int timeout;
+
+    private final Histogram connect = new Histogram();
+    private final Histogram roundTrip = new Histogram();
+    private long bulkBytes = 0;
+    private long bulkNanos = 0;
+
+    TcpProbe(InetSocketAddress address, int timeout) {
+        this.address = address;
+        this.timeout = timeout;
+    }
+
+    // round trips need an echo far end, a plain listener only allows connects
+    void run(int connects, int roundTrips) throws IOException {
+        byte[] request = new byte[MESSAGE];
+        byte[] response = new byte[MESSAGE];
+        for (int i = 0; i < request.length; i++) {
+            request[i] = (byte) i;
+        }
+        for (int i = 0; i < connects; i++) {
+            Socket socket = new Socket();
+            try {
+                long t0 = System.nanoTime();
+                socket.connect(address, timeout);
+                connect.record(System.nanoTime() - t0);
+                if (roundTrips > 0) {
+                    socket.setTcpNoDelay(true);
+                    socket.setSoTimeout(timeout);
+                    OutputStream out = socket.getOutputStream();
+                    InputStream in = socket.getInputStream();
+                    out.write(EchoServer.ECHO);
+                    for (int j = 0; j < roundTrips; j++) {
+                        long t1 = System.nanoTime();
+                        out.write(request);
+                        out.flush();
+                        readFully(in, response);
+                        roundTrip.record(System.nanoTime() - t1);
+                    }
+                }
+            } finally {
+                socket.close();
+            }
+        }
+    }
+
+    void bulk(long bytes) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(address, timeout);
+            socket.setSoTimeout(Math.max(timeout, 60000));
+            OutputStream out = socket.getOutputStream();
+            byte[] chunk = new byte[CHUNK];
+            long start = System.nanoTime();
+            out.write(EchoServer.SINK);
+            long left = bytes;
+            while (left > 0) {
+                int len = (int) Math.min(left, chunk.length);
+                out.write(chunk, 0, len);
+                left -= len;
+            }
+            out.flush();
+            socket.shutdownOutput();
+            if (socket.getInputStream().read() == -1)
+                throw new IOException("no acknowledge from sink");
+            bulkNanos = System.nanoTime() - start;
+            bulkBytes = bytes;
+        } finally {
+            socket.close();
+        }
+    }
+
+    void report(PrintStream out) {
+        Histogram.printHeader(out);
+        connect.print(out, "connect");
+        if (roundTrip.count() > 0) {
+            roundTrip.print(out, "round trip");
+            long total = roundTrip.sum();
+            out.printf("%d round trips of %d bytes: %.1f round trips/s%n",
+                    roundTrip.count(), MESSAGE, roundTrip.count() * 1e9 / total);
+        }
+        if (bulkBytes > 0) {
+            out.printf("Bulk: %d bytes in %.3f s: %.2f MB/s%n",
+                    bulkBytes, bulkNanos / 1e9, bulkBytes / (bulkNanos / 1e9) / (1 << 20));
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] buffer) throws IOException {
+        int pos = 0;
+        while (pos < buffer.length) {
+            int read = in.read(buffer, pos, buffer.length - pos);
+            if (read == -1)
+                throw new IOException("connection closed after " + pos + " bytes");
+            pos += read;
+        }
+    }
+}
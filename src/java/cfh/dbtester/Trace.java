@@ -0,0 +1,187 @@
+package cfh.dbtester;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.DatabaseMetaData;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// JDK Flight Recorder events of the JDBC phases, to be read in JMC next to GC, socket and thread events;
+// jdk.jfr is only touched by JfrTrace, loaded by reflection for jfr:, so without it (Java 8, or no jfr:)
+// every event is a no-op costing one check
+class Trace {
+
+    private static final int SQL_LENGTH = 200;
+
+    // the recording, implemented by JfrTrace
+    interface Recorder {
+        // the Flight Recorder event behind <event>, null if not traced
+        Span span(Event event);
+
+        void stop();
+    }
+
+    // a Flight Recorder event, committed with the fields of the Trace event
+    interface Span {
+        void begin();
+
+        void end();
+
+        boolean shouldCommit();
+
+        void commit(Event event);
+    }
+
+    abstract static class Event {
+        private final Span span;
+
+        Event() {
+            Recorder current = recorder;
+            span = current == null ? null : current.span(this);
+        }
+
+        void begin() {
+            if (span != null) {
+                span.begin();
+            }
+        }
+
+        void end() {
+            if (span != null) {
+                span.end();
+            }
+        }
+
+        boolean shouldCommit() {
+            return span != null && span.shouldCommit();
+        }
+
+        void commit() {
+            if (span != null) {
+                span.commit(this);
+            }
+        }
+    }
+
+    static class ConnectEvent extends Event {
+        String url;
+        String user;
+        boolean success;
+    }
+
+    static class MetaDataEvent extends Event {
+        String url;
+        String method;
+        boolean success;
+    }
+
+    static class ExecuteEvent extends Event {
+        String url;
+        int sqlHash;
+        String sql;
+        boolean resultSet;
+        int updateCount;
+    }
+
+    static class MoreResultsEvent extends Event {
+        int sqlHash;
+        boolean resultSet;
+        int updateCount;
+    }
+
+    static class FetchEvent extends Event {
+        int sqlHash;
+        int rows;
+        long totalRows;
+    }
+
+    private static volatile Recorder recorder = null;
+
+    private Trace() {
+    }
+
+    // starts the recording written to <file> by stop(), an IOException if this JVM has no Flight Recorder
+    static void start(File file) throws IOException {
+        Class<?> type;
+        try {
+            Class.forName("jdk.jfr.Recording");
+            type = Class.forName("cfh.dbtester.JfrTrace");
+        } catch (ClassNotFoundException ex) {
+            throw new IOException("no Flight Recorder in Java " + System.getProperty("java.version"));
+        } catch (LinkageError ex) {
+            throw new IOException("no Flight Recorder in Java " + System.getProperty("java.version"), ex);
+        }
+        try {
+            recorder = (Recorder) type.getDeclaredConstructor(File.class).newInstance(file);
+        } catch (InvocationTargetException ex) {
+            if (ex.getCause() instanceof IOException)
+                throw (IOException) ex.getCause();
+            throw new IOException(ex.getCause());
+        } catch (ReflectiveOperationException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    static void stop() {
+        Recorder current = recorder;
+        recorder = null;
+        if (current != null) {
+            current.stop();
+        }
+    }
+
+    static boolean isRecording() {
+        return recorder != null;
+    }
+
+    static String sql(String sql) {
+        return sql == null || sql.length() <= SQL_LENGTH ? sql : sql.substring(0, SQL_LENGTH);
+    }
+
+    // every call of the returned metadata is a MetaDataEvent and a timer in <metrics> (may be null),
+    // the metadata itself if there is nothing to record
+    static DatabaseMetaData metaData(final DatabaseMetaData metaData, final String url, final Metrics metrics) {
+        if (metrics == null && !isRecording())
+            return metaData;
+        return (DatabaseMetaData) Proxy.newProxyInstance(Trace.class.getClassLoader(),
+                new Class<?>[] { DatabaseMetaData.class }, new InvocationHandler() {
+                    // one timer per method, looked up by the Method instead of a key built for every call
+                    private final Map<Method, Metrics.Metric> timers = new ConcurrentHashMap<Method, Metrics.Metric>();
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getDeclaringClass() == Object.class)
+                            return method.invoke(metaData, args);
+                        MetaDataEvent event = new MetaDataEvent();
+                        event.begin();
+                        long start = System.nanoTime();
+                        try {
+                            Object result = method.invoke(metaData, args);
+                            event.success = true;
+                            return result;
+                        } catch (InvocationTargetException ex) {
+                            throw ex.getCause();
+                        } finally {
+                            event.end();
+                            if (metrics != null) {
+                                Metrics.Metric timer = timers.get(method);
+                                if (timer == null) {
+                                    timer = metrics.timer("metadata_call", "DatabaseMetaData calls", "method", method.getName());
+                                    timers.put(method, timer);
+                                }
+                                timer.time(System.nanoTime() - start);
+                            }
+                            if (event.shouldCommit()) {
+                                event.url = url;
+                                event.method = method.getName();
+                                event.commit();
+                            }
+                        }
+                    }
+                });
+    }
+}
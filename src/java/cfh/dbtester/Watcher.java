@@ -0,0 +1,285 @@
+package cfh.dbtester;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+// long running probe: connect (or reuse the connection) and run sql: on a fixed schedule, latencies kept in
+// rolling 1/5/15 minute windows, one console line per minute and optionally served on a local HTTP port
+class Watcher {
+
+    private static final int[] WINDOWS = { 1, 5, 15 };
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+    private static final int VALID_TIMEOUT = 5;
+    private static final String OPENMETRICS_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private final ConnectionFactory factory;
+    private final String sql;
+    private final int fetchSize;
+    private final long interval;
+    private final boolean reuse;
+
+    private final RollingWindow connect = new RollingWindow(15);
+    private final RollingWindow execute = new RollingWindow(15);
+    private final RollingWindow fetch = new RollingWindow(15);
+    private final RollingWindow total = new RollingWindow(15);
+    private final Histogram scratch = new Histogram();
+
+    private volatile long probes = 0;
+    private volatile long failures = 0;
+    private volatile long skipped = 0;
+    private Connection conn = null;
+    private String lastError = null;
+    private HttpServer server = null;
+
+    Watcher(ConnectionFactory factory, String sql, int fetchSize, int seconds, boolean reuse) {
+        this.factory = factory;
+        this.sql = sql;
+        this.fetchSize = fetchSize;
+        this.interval = TimeUnit.SECONDS.toNanos(seconds);
+        this.reuse = reuse;
+    }
+
+    // /metrics as OpenMetrics text, everything else as JSON, only reachable from the local host
+    int serve(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    if (!exchange.getRequestMethod().equals("GET")) {
+                        exchange.sendResponseHeaders(405, -1);
+                        return;
+                    }
+                    boolean openMetrics = exchange.getRequestURI().getPath().equals("/metrics");
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    PrintWriter writer = new PrintWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8));
+                    if (openMetrics) {
+                        metrics().writeOpenMetrics(writer);
+                    } else {
+                        metrics().writeJSON(writer);
+                    }
+                    writer.close();
+                    exchange.getResponseHeaders().set("Content-Type", openMetrics ? OPENMETRICS_TYPE : "application/json");
+                    exchange.sendResponseHeaders(200, bytes.size());
+                    OutputStream body = exchange.getResponseBody();
+                    bytes.writeTo(body);
+                    body.close();
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    // probes until <duration> nanoseconds are over (0 for ever); a probe taking longer than the interval
+    // skips the missed slots instead of running them back to back
+    void run(long duration, PrintStream out) throws InterruptedException {
+        long start = System.nanoTime();
+        long end = duration > 0 ? start + duration : Long.MAX_VALUE;
+        long next = start;
+        long minute = RollingWindow.now() / MINUTE;
+        Histogram.printHeader(out);
+        try {
+            while (next < end) {
+                long wait;
+                while ((wait = next - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                    if (Thread.interrupted())
+                        throw new InterruptedException();
+                }
+                probe(out);
+                long current = RollingWindow.now() / MINUTE;
+                if (current != minute) {
+                    printMinute(out, minute);
+                    minute = current;
+                }
+                next += interval;
+                long late = System.nanoTime() - next;
+                if (late > 0) {
+                    long missed = late / interval + 1;
+                    skipped += missed;
+                    next += missed * interval;
+                }
+            }
+        } finally {
+            close();
+            if (server != null) {
+                server.stop(0);
+            }
+        }
+    }
+
+    void report(PrintStream out) {
+        long now = RollingWindow.now();
+        out.printf("%d probes, %d failed, %d skipped%n", probes, failures, skipped);
+        Histogram.printHeader(out);
+        for (int window : WINDOWS) {
+            print(out, "connect " + window + "m", connect, window, now);
+            print(out, "execute " + window + "m", execute, window, now);
+            print(out, "fetch " + window + "m", fetch, window, now);
+            long errors = print(out, "total " + window + "m", total, window, now);
+            out.printf("%-16s %8d%n", "errors " + window + "m", errors);
+        }
+    }
+
+    // the windows as seen now, a fresh Metrics for every scrape
+    Metrics metrics() {
+        Metrics metrics = new Metrics();
+        record(metrics);
+        return metrics;
+    }
+
+    void record(Metrics metrics) {
+        long now = RollingWindow.now();
+        for (int window : WINDOWS) {
+            String label = window + "m";
+            record(metrics, "watch_connect", "Opening a connection, in the window", connect, window, now, label);
+            record(metrics, "watch_execute", "Statement.execute, in the window", execute, window, now, label);
+            record(metrics, "watch_fetch", "Reading all results, in the window", fetch, window, now, label);
+            long errors = record(metrics, "watch_probe", "Complete probes, in the window", total, window, now, label);
+            metrics.set("watch_errors", "Failed probes in the window", errors, "window", label);
+        }
+        metrics.add("watch_probes", "Probes run", probes);
+        metrics.add("watch_failures", "Probes failed", failures);
+        metrics.add("watch_skipped", "Probes skipped because the previous one was late", skipped);
+    }
+
+    private static long record(Metrics metrics, String name, String help, RollingWindow rolling, int window, long now,
+            String label) {
+        Histogram histogram = new Histogram();
+        long errors = rolling.window(window, now, histogram);
+        metrics.histogram(name, help, histogram, "window", label);
+        return errors;
+    }
+
+    private void probe(PrintStream out) {
+        long now = RollingWindow.now();
+        long t0 = System.nanoTime();
+        try {
+            if (conn == null) {
+                conn = factory.open();
+                connect.record(System.nanoTime() - t0, now);
+            }
+            long t1 = System.nanoTime();
+            if (sql != null) {
+                Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                try {
+                    if (fetchSize > 0) {
+                        stmt.setFetchSize(fetchSize);
+                    }
+                    boolean isResultSet = stmt.execute(sql);
+                    long t2 = System.nanoTime();
+                    execute.record(t2 - t1, now);
+                    readResults(stmt, isResultSet);
+                    fetch.record(System.nanoTime() - t2, now);
+                } finally {
+                    stmt.close();
+                }
+            } else if (reuse) {
+                // nothing to run on a kept connection, check that it is still alive
+                if (!conn.isValid(VALID_TIMEOUT))
+                    throw new SQLException("connection no longer valid");
+                execute.record(System.nanoTime() - t1, now);
+            }
+            if (!reuse) {
+                Connection closing = conn;
+                conn = null;
+                factory.release(closing);
+            }
+            total.record(System.nanoTime() - t0, now);
+            lastError = null;
+        } catch (SQLException ex) {
+            failed(out, now, ex);
+        } catch (RuntimeException ex) {
+            // a driver bug must not end the watch, it counts as a failed probe
+            failed(out, now, ex);
+        } finally {
+            probes += 1;
+        }
+    }
+
+    private void failed(PrintStream out, long now, Exception ex) {
+        total.error(now);
+        failures += 1;
+        close();
+        // an outage is reported once, not every interval
+        String error = ex.toString();
+        if (!error.equals(lastError)) {
+            out.printf("%tT %s%n", System.currentTimeMillis(), error);
+            lastError = error;
+        }
+    }
+
+    private static void readResults(Statement stmt, boolean isResultSet) throws SQLException {
+        int count = stmt.getUpdateCount();
+        while (isResultSet || count != -1) {
+            if (isResultSet) {
+                ResultSet rset = stmt.getResultSet();
+                try {
+                    ColumnReader[] readers = ColumnReader.create(rset.getMetaData());
+                    while (rset.next()) {
+                        for (ColumnReader reader : readers) {
+                            reader.read(rset);
+                        }
+                    }
+                } finally {
+                    rset.close();
+                }
+            }
+            isResultSet = stmt.getMoreResults();
+            count = stmt.getUpdateCount();
+        }
+    }
+
+    private void printMinute(PrintStream out, long minute) {
+        scratch.reset();
+        long errors = total.window(1, minute * MINUTE, scratch);
+        print(out, String.format("%tR %d err", TimeUnit.NANOSECONDS.toMillis(minute * MINUTE), errors));
+    }
+
+    private long print(PrintStream out, String label, RollingWindow rolling, int window, long now) {
+        scratch.reset();
+        long errors = rolling.window(window, now, scratch);
+        print(out, label);
+        return errors;
+    }
+
+    // an empty window has no latencies, zeros would read as instant probes
+    private void print(PrintStream out, String label) {
+        if (scratch.count() == 0) {
+            out.printf("%-16.16s %8d%n", label, 0);
+        } else {
+            scratch.print(out, label);
+        }
+    }
+
+    private void close() {
+        if (conn != null) {
+            try {
+                factory.release(conn);
+            } catch (SQLException ex) {
+                // connection is dropped anyway
+            }
+            conn = null;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package cfh.dbtester;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+// numbers in the JSON and OpenMetrics reports: whole values without fraction, the rest in full without exponent
+public class MetricsTest {
+
+    @Test
+    public void wholeNumbers() {
+        assertEquals("0", Metrics.number(0));
+        assertEquals("100", Metrics.number(100));
+        assertEquals("-42", Metrics.number(-42));
+        assertEquals("123456789012345", Metrics.number(123456789012345.0));
+    }
+
+    @Test
+    public void fractionsKeepEveryDigit() {
+        assertEquals("123456789.5", Metrics.number(123456789.5));
+        assertEquals("100000000.25", Metrics.number(1e8 + 0.25));
+        assertEquals("0.5", Metrics.number(0.5));
+        assertEquals("0.000184319", Metrics.number(0.000184319));
+        assertEquals("0.0000000015", Metrics.number(1.5e-9));
+    }
+
+    @Test
+    public void largeNumbersWithoutExponent() {
+        assertEquals("1000000000000000", Metrics.number(1e15));
+        assertEquals("12345678901234568", Metrics.number(12345678901234568.0));
+    }
+}
@@ -0,0 +1,106 @@
+package cfh.dbtester;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+// splitting of the scripts in src/test/resources: ';' ends statements, only Oracle and T-SQL bodies wait for '/' or GO
+public class ScriptSplitterTest {
+
+    @Test
+    public void transactionIsNoBlock() throws IOException {
+        List<String> statements = split("transaction.sql");
+        assertEquals(7, statements.size());
+        assertEquals("-- a transaction, not a block\nBEGIN", statements.get(0));
+        assertTrue(statements.get(1).startsWith("INSERT"));
+        assertEquals("COMMIT", statements.get(3));
+        assertEquals("BEGIN TRANSACTION", statements.get(4));
+    }
+
+    @Test
+    public void enumTypeEndsWithSemicolon() throws IOException {
+        List<String> statements = split("enum.sql");
+        assertEquals(3, statements.size());
+        assertEquals("CREATE TYPE mood AS ENUM ('sad', 'ok', 'happy')", statements.get(0));
+        assertTrue(statements.get(1).startsWith("CREATE TABLE"));
+    }
+
+    @Test
+    public void plpgsqlFunctionEndsAfterDollarQuote() throws IOException {
+        List<String> statements = split("plpgsql.sql");
+        assertEquals(4, statements.size());
+        assertTrue(statements.get(0).startsWith("CREATE OR REPLACE FUNCTION touch()"));
+        assertTrue(statements.get(0).endsWith("$$ LANGUAGE plpgsql"));
+        assertTrue(statements.get(1).startsWith("CREATE TRIGGER"));
+        assertEquals("CREATE FUNCTION one() RETURNS integer AS 'SELECT 1;' LANGUAGE sql", statements.get(2));
+        assertEquals("SELECT one()", statements.get(3));
+    }
+
+    @Test
+    public void oracleBodiesEndWithSlash() throws IOException {
+        List<String> statements = split("oracle.sql");
+        assertEquals(4, statements.size());
+        assertTrue(statements.get(0).startsWith("CREATE OR REPLACE PROCEDURE"));
+        assertTrue(statements.get(0).endsWith("END;"));
+        assertTrue(statements.get(1).startsWith("CREATE OR REPLACE TYPE BODY"));
+        assertEquals("BEGIN\n    raise_salary(1);\nEND;", statements.get(2));
+        assertEquals("SELECT sal FROM emp WHERE id = 1", statements.get(3));
+    }
+
+    @Test
+    public void tsqlBodyEndsWithGo() throws IOException {
+        List<String> statements = split("tsql.sql");
+        assertEquals(3, statements.size());
+        assertTrue(statements.get(0).startsWith("CREATE PROCEDURE list_people AS"));
+        assertTrue(statements.get(0).endsWith("END"));
+        assertEquals("DECLARE @count INT", statements.get(1));
+        assertEquals("SELECT 1", statements.get(2));
+    }
+
+    @Test
+    public void slashDelimiterEndsOnlyAtLines() throws IOException {
+        List<String> statements = split(new ScriptSplitter(
+                new StringReader("INSERT INTO t VALUES (1);\nINSERT INTO t VALUES (2);\n/\nSELECT 1;\n"), "/"));
+        assertEquals(2, statements.size());
+        assertEquals("INSERT INTO t VALUES (1);\nINSERT INTO t VALUES (2);", statements.get(0));
+        assertEquals("SELECT 1;", statements.get(1));
+    }
+
+    @Test
+    public void mysqlDelimiter() throws IOException {
+        List<String> statements = split(new ScriptSplitter(new StringReader(
+                "DELIMITER //\nCREATE PROCEDURE p() BEGIN SELECT 1; END//\nDELIMITER ;\nCALL p();\n")));
+        assertEquals(2, statements.size());
+        assertEquals("CREATE PROCEDURE p() BEGIN SELECT 1; END", statements.get(0));
+        assertEquals("CALL p()", statements.get(1));
+    }
+
+    private static List<String> split(String script) throws IOException {
+        InputStream in = ScriptSplitterTest.class.getResourceAsStream(script);
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+        try {
+            return split(new ScriptSplitter(reader));
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static List<String> split(ScriptSplitter splitter) throws IOException {
+        List<String> statements = new ArrayList<String>();
+        String statement;
+        while ((statement = splitter.next()) != null) {
+            statements.add(statement);
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,85 @@
+package cfh.dbtester;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+// tcp sweep against listeners on the loopback address: the ports listening are open, a released one is refused
+public class SweepTest {
+
+    private static final int TIMEOUT = 2000;
+
+    private final InetAddress loopback = InetAddress.getLoopbackAddress();
+    private ServerSocket first;
+    private ServerSocket second;
+    private int closed;
+
+    @Before
+    public void setUp() throws IOException {
+        first = new ServerSocket(0, 50, loopback);
+        second = new ServerSocket(0, 50, loopback);
+        ServerSocket released = new ServerSocket(0, 50, loopback);
+        closed = released.getLocalPort();
+        released.close();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void tcpReportsOpenAndClosedPorts() throws IOException {
+        Sweep sweep = new Sweep();
+        sweep.tcp(Collections.singletonList(loopback),
+                Arrays.asList(first.getLocalPort(), closed, second.getLocalPort()), TIMEOUT);
+
+        Map<Integer, String> status = new HashMap<Integer, String>();
+        for (Sweep.Result result : sweep.results()) {
+            assertEquals(loopback, result.address);
+            status.put(result.port, result.status);
+        }
+        assertEquals(3, status.size());
+        assertEquals("open", status.get(first.getLocalPort()));
+        assertEquals("open", status.get(second.getLocalPort()));
+        assertEquals("refused", status.get(closed));
+    }
+
+    @Test
+    public void tcpMeasuresOpenPorts() throws IOException {
+        Sweep sweep = new Sweep();
+        sweep.tcp(Collections.singletonList(loopback), Collections.singletonList(first.getLocalPort()), TIMEOUT);
+
+        Sweep.Result result = sweep.results().get(0);
+        assertEquals("open", result.status);
+        assertTrue(result.nanos >= 0);
+        assertEquals("127.0.0.1:" + first.getLocalPort(), result.endpoint());
+    }
+
+    @Test
+    public void portsExpandsRanges() {
+        List<Integer> ports = Sweep.ports("1521, 5432-5434");
+        assertEquals(Arrays.asList(1521, 5432, 5433, 5434), ports);
+    }
+
+    @Test
+    public void hostsSkipsNetworkAndBroadcast() throws IOException {
+        List<InetAddress> hosts = Sweep.hosts("127.0.0.0/30");
+        assertEquals(2, hosts.size());
+        assertEquals("127.0.0.1", hosts.get(0).getHostAddress());
+        assertEquals("127.0.0.2", hosts.get(1).getHostAddress());
+    }
+}
@@ -0,0 +1,3 @@
+CREATE TYPE mood AS ENUM ('sad', 'ok', 'happy');
+CREATE TABLE person (name TEXT, current_mood mood);
+INSERT INTO person VALUES ('Moe', 'happy');
@@ -0,0 +1,18 @@
+CREATE OR REPLACE PROCEDURE raise_salary(p_id NUMBER) AS
+BEGIN
+    UPDATE emp SET sal = sal * 1.1 WHERE id = p_id;
+    COMMIT;
+END;
+/
+CREATE OR REPLACE TYPE BODY point AS
+    MEMBER FUNCTION norm RETURN NUMBER IS
+    BEGIN
+        RETURN SQRT(x * x + y * y);
+    END;
+END;
+/
+BEGIN
+    raise_salary(1);
+END;
+/
+SELECT sal FROM emp WHERE id = 1;
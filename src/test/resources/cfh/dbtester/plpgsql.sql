@@ -0,0 +1,9 @@
+CREATE OR REPLACE FUNCTION touch() RETURNS trigger AS $$
+BEGIN
+    NEW.modified := now();
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+CREATE TRIGGER person_touch BEFORE UPDATE ON person FOR EACH ROW EXECUTE FUNCTION touch();
+CREATE FUNCTION one() RETURNS integer AS 'SELECT 1;' LANGUAGE sql;
+SELECT one();
@@ -0,0 +1,8 @@
+-- a transaction, not a block
+BEGIN;
+INSERT INTO account (id, balance) VALUES (1, 100);
+INSERT INTO account (id, balance) VALUES (2, 200);
+COMMIT;
+BEGIN TRANSACTION;
+UPDATE account SET balance = balance - 10 WHERE id = 1;
+COMMIT;
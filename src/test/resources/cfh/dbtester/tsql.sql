@@ -0,0 +1,8 @@
+CREATE PROCEDURE list_people AS
+BEGIN
+    SELECT name FROM person;
+    SELECT COUNT(*) FROM person;
+END
+GO
+DECLARE @count INT;
+SELECT 1;